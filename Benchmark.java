@@ -0,0 +1,612 @@
+/**
+ * Nome: Arianna
+ * Cognome: Dellaria
+ * Matricola: 0001125416
+ * Email: arianna.dellaria@studio.unibo.it
+ *
+ * BENCHMARK
+ * Misura i punti caldi dei tre esercizi su input generati in modo riproducibile (stesso seme = stesso input):
+ * - Esercizio1: descendants e assignLevels su alberi profondi, larghi e casuali, ArrayTree e IncrementalTree sugli stessi alberi;
+ * - Esercizio2: contaDecodifiche su stringhe binarie lunghe;
+ * - Esercizio3: dijkstra (PriorityQueue, heap d-ario, radix heap), findKPaths e parseEdgeLine
+ *   su griglie, grafi casuali e grafi scale-free pesati.
+ *
+ * Per ogni caso si eseguono prima alcune iterazioni di riscaldamento (per dare tempo al JIT) e poi
+ * le iterazioni misurate; ogni iterazione ripete l'operazione finché non passa il tempo minimo.
+ * Si riportano il tempo per operazione (media e minimo sulle iterazioni), i byte allocati per operazione
+ * (com.sun.management.ThreadMXBean) e le raccolte del GC avvenute durante la misura.
+ * I risultati si possono salvare come riferimento e confrontare con un'esecuzione successiva.
+ *
+ * Uso:
+ *   javac -encoding UTF-8 *.java
+ *   java -cp . Benchmark [--dimensione N] [--seme s] [--rapido] [--filtro testo] [--salva f] [--confronta f]
+ */
+
+
+import java.io.*;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+public class Benchmark {
+
+    // Risultato dell'operazione sommato qui: è volatile, così il JIT non può eliminare il lavoro misurato.
+    static volatile long pozzo = 0;
+
+    /**
+     * Un caso di benchmark: nome stabile (usato per il confronto) e operazione da misurare.
+     * L'operazione restituisce un valore che finisce nel pozzo.
+     */
+    interface Operazione {
+        long esegui();
+    }
+
+    static class Caso {
+        final String nome;
+        final Operazione op;
+
+        Caso(String nome, Operazione op) {
+            this.nome = nome;
+            this.op = op;
+        }
+    }
+
+    static class Risultato {
+        final String nome;
+        final double nsOp, nsMin;
+        final double byteOp;
+        final long gcConteggio, gcMs;
+
+        Risultato(String nome, double nsOp, double nsMin, double byteOp, long gcConteggio, long gcMs) {
+            this.nome = nome;
+            this.nsOp = nsOp;
+            this.nsMin = nsMin;
+            this.byteOp = byteOp;
+            this.gcConteggio = gcConteggio;
+            this.gcMs = gcMs;
+        }
+    }
+
+    /**
+     * Parametri della misura: iterazioni di riscaldamento, iterazioni misurate
+     * e durata minima di ciascuna iterazione.
+     */
+    static class Parametri {
+        int riscaldamento = 5;
+        int misure = 10;
+        long nsIterazione = 200_000_000L;
+    }
+
+    /*
+     * Generatori con seme: a parità di seme e dimensione l'input è sempre lo stesso,
+     * quindi due esecuzioni (prima e dopo una modifica) misurano lo stesso lavoro.
+     */
+    static class Generatori {
+
+        // Catena di n nodi: profondità n - 1, il caso peggiore per la ricorsione.
+        static Esercizio1.Node alberoProfondo(int n) {
+            Esercizio1.Node radice = new Esercizio1.Node("N0");
+            Esercizio1.Node corrente = radice;
+            for (int i = 1; i < n; i++) {
+                Esercizio1.Node figlio = new Esercizio1.Node("N" + i);
+                figlio.parent = corrente;
+                corrente.children.add(figlio);
+                corrente = figlio;
+            }
+            return radice;
+        }
+
+        // Radice con n - 1 figli foglia: profondità 1, un solo livello molto largo.
+        static Esercizio1.Node alberoLargo(int n) {
+            Esercizio1.Node radice = new Esercizio1.Node("N0");
+            for (int i = 1; i < n; i++) {
+                Esercizio1.Node figlio = new Esercizio1.Node("N" + i);
+                figlio.parent = radice;
+                radice.children.add(figlio);
+            }
+            return radice;
+        }
+
+        // Albero casuale: il padre del nodo i è scelto uniformemente tra i nodi 0..i-1.
+        static Esercizio1.Node alberoCasuale(int n, long seme) {
+            Random rnd = new Random(seme);
+            Esercizio1.Node[] nodi = new Esercizio1.Node[n];
+            nodi[0] = new Esercizio1.Node("N0");
+            for (int i = 1; i < n; i++) {
+                nodi[i] = new Esercizio1.Node("N" + i);
+                Esercizio1.Node padre = nodi[rnd.nextInt(i)];
+                nodi[i].parent = padre;
+                padre.children.add(nodi[i]);
+            }
+            return nodi[0];
+        }
+
+        // Stesso albero come ArrayTree: le relazioni si aggiungono in ampiezza dalla radice.
+        static Esercizio1.ArrayTree alberoArray(Esercizio1.Node radice) {
+            Esercizio1.ArrayTree albero = new Esercizio1.ArrayTree();
+            ArrayDeque<Esercizio1.Node> coda = new ArrayDeque<>();
+            coda.add(radice);
+            albero.names.id(radice.name);
+            while (!coda.isEmpty()) {
+                Esercizio1.Node nodo = coda.poll();
+                for (Esercizio1.Node figlio : nodo.children) {
+                    albero.addEdge(figlio.name, nodo.name);
+                    coda.add(figlio);
+                }
+            }
+            return albero;
+        }
+
+        // Stringa binaria di n caratteri con probabilità pZero di '0' per ogni posizione.
+        static String stringaBinaria(int n, double pZero, long seme) {
+            Random rnd = new Random(seme);
+            char[] c = new char[n];
+            for (int i = 0; i < n; i++) {
+                c[i] = rnd.nextDouble() < pZero ? '0' : '1';
+            }
+            return new String(c);
+        }
+
+        // Tabella di quanti codici binari distinti con lunghezze casuali da 1 a lunghezzaMax, lettere L0, L1, ...
+        static Esercizio2.Automa tabellaCodici(int quanti, int lunghezzaMax, long seme) {
+            Random rnd = new Random(seme);
+            Set<String> codici = new LinkedHashSet<>();
+            while (codici.size() < quanti) {
+                int L = 1 + rnd.nextInt(lunghezzaMax);
+                StringBuilder sb = new StringBuilder();
+                for (int j = 0; j < L; j++) sb.append(rnd.nextBoolean() ? '1' : '0');
+                codici.add(sb.toString());
+            }
+            String[] lettere = new String[quanti];
+            for (int j = 0; j < quanti; j++) lettere[j] = "L" + j;
+            return new Esercizio2.Automa(lettere, codici.toArray(new String[0]));
+        }
+
+        // Griglia r x c con archi orizzontali e verticali di peso intero 1..maxPeso.
+        static Esercizio3.Grafo griglia(int r, int c, int maxPeso, long seme) {
+            Random rnd = new Random(seme);
+            List<Esercizio3.EdgeData> archi = new ArrayList<>();
+            for (int i = 0; i < r; i++) {
+                for (int j = 0; j < c; j++) {
+                    int u = i * c + j;
+                    if (j + 1 < c) archi.add(new Esercizio3.EdgeData(u, u + 1, 1 + rnd.nextInt(maxPeso)));
+                    if (i + 1 < r) archi.add(new Esercizio3.EdgeData(u, u + c, 1 + rnd.nextInt(maxPeso)));
+                }
+            }
+            return Esercizio3.Grafo.build(r * c, archi);
+        }
+
+        // Grafo casuale con n nodi e m archi (estremi uniformi, niente cappi), pesi interi 1..maxPeso.
+        static Esercizio3.Grafo casuale(int n, int m, int maxPeso, long seme) {
+            Random rnd = new Random(seme);
+            List<Esercizio3.EdgeData> archi = new ArrayList<>();
+            while (archi.size() < m) {
+                int u = rnd.nextInt(n), v = rnd.nextInt(n);
+                if (u != v) archi.add(new Esercizio3.EdgeData(u, v, 1 + rnd.nextInt(maxPeso)));
+            }
+            return Esercizio3.Grafo.build(n, archi);
+        }
+
+        /*
+         * Grafo scale-free (Barabási–Albert): ogni nuovo nodo si collega a k nodi esistenti
+         * scelti con probabilità proporzionale al grado; l'elenco degli estremi già usati
+         * permette di estrarre in tempo costante. Pesi reali in [1, 10).
+         */
+        static Esercizio3.Grafo scaleFree(int n, int k, long seme) {
+            Random rnd = new Random(seme);
+            List<Esercizio3.EdgeData> archi = new ArrayList<>();
+            int[] estremi = new int[2 * n * k];
+            int quanti = 0;
+            for (int v = 1; v < n; v++) {
+                int grado = Math.min(k, v);
+                for (int j = 0; j < grado; j++) {
+                    int u = quanti == 0 ? 0 : estremi[rnd.nextInt(quanti)];
+                    archi.add(new Esercizio3.EdgeData(u, v, 1 + 9 * rnd.nextDouble()));
+                    estremi[quanti++] = u;
+                    estremi[quanti++] = v;
+                }
+            }
+            return Esercizio3.Grafo.build(n, archi);
+        }
+
+        // Righe di arco nel formato del file di input: "( Nu Nv ) peso".
+        static String[] righeArco(int quante, int n, long seme) {
+            Random rnd = new Random(seme);
+            String[] righe = new String[quante];
+            for (int i = 0; i < quante; i++) {
+                righe[i] = "( N" + rnd.nextInt(n) + " N" + rnd.nextInt(n) + " ) " + (1 + rnd.nextInt(100)) + ".0";
+            }
+            return righe;
+        }
+    }
+
+    /**
+     * Costruisce l'elenco dei casi per la dimensione data; gli input si generano una volta sola
+     * qui, fuori dalla misura.
+     */
+    static List<Caso> casi(int dim, long seme) {
+        List<Caso> casi = new ArrayList<>();
+
+        // Esercizio1
+        Esercizio1.Node profondo = Generatori.alberoProfondo(dim);
+        Esercizio1.Node largo = Generatori.alberoLargo(dim);
+        Esercizio1.Node casuale = Generatori.alberoCasuale(dim, seme);
+        Esercizio1.Node[] alberi = {profondo, largo, casuale};
+        String[] nomiAlberi = {"profondo", "largo", "casuale"};
+        for (int i = 0; i < alberi.length; i++) {
+            Esercizio1.Node radice = alberi[i];
+            casi.add(new Caso("e1.descendants." + nomiAlberi[i], () -> Esercizio1.descendants(radice)));
+            casi.add(new Caso("e1.assignLevels." + nomiAlberi[i], () -> {
+                Map<Integer, List<Esercizio1.Node>> livelli = new HashMap<>();
+                Esercizio1.assignLevels(radice, 0, livelli);
+                return livelli.size();
+            }));
+            Esercizio1.ArrayTree albero = Generatori.alberoArray(radice);
+            casi.add(new Caso("e1.arrayTree.compute." + nomiAlberi[i], () -> {
+                albero.compute(0);
+                return albero.descendants[0];
+            }));
+            // Lettura incrementale: ogni arco risale gli antenati, quindi sulla catena sarebbe quadratica
+            if (radice != profondo) {
+                casi.add(new Caso("e1.incrementale." + nomiAlberi[i], () -> {
+                    Esercizio1.IncrementalTree t = new Esercizio1.IncrementalTree(Writer.nullWriter());
+                    ArrayDeque<Esercizio1.Node> coda = new ArrayDeque<>();
+                    coda.add(radice);
+                    while (!coda.isEmpty()) {
+                        Esercizio1.Node nodo = coda.poll();
+                        for (Esercizio1.Node figlio : nodo.children) {
+                            t.addEdge(figlio.name, nodo.name);
+                            coda.add(figlio);
+                        }
+                    }
+                    return t.size();
+                }));
+            }
+        }
+
+        // Esercizio2: stringa uniforme e stringa ricca di '0' (più codici applicabili per posizione)
+        String uniforme = Generatori.stringaBinaria(dim * 10, 0.5, seme);
+        String zeri = Generatori.stringaBinaria(dim * 10, 0.9, seme + 1);
+        casi.add(new Caso("e2.contaDecodifiche.uniforme", () -> Esercizio2.contaDecodifiche(uniforme)));
+        casi.add(new Caso("e2.contaDecodifiche.zeri", () -> Esercizio2.contaDecodifiche(zeri)));
+
+        // Modalità di conteggio sulla stessa stringa: il ciclo primitivo int[] e l'anello di registri in ogni aritmetica.
+        // La stringa è più corta perché nel conteggio esatto i numeri crescono con la lunghezza.
+        String corta = uniforme.substring(0, Math.min(uniforme.length(), 5000));
+        casi.add(new Caso("e2.conteggio.primitivo", () -> Esercizio2.contaDecodifiche(corta)));
+        for (String modo : new String[]{"int", "esatto", "mod", "log"}) {
+            Esercizio2.Conteggio c = Esercizio2.Conteggio.crea(modo, 1_000_000_007L, Esercizio2.PREDEFINITO.lunghezzaMax);
+            casi.add(new Caso("e2.conteggio." + modo, () -> Esercizio2.contaDecodifiche(corta, Esercizio2.PREDEFINITO, c).length()));
+        }
+
+        // Elenco delle decodifiche: salto alla 10^15-esima e pagina di 100 su una stringa di soli '0'
+        String soloZeri = "0".repeat(Math.min(dim, 2000));
+        casi.add(new Caso("e2.decodifiche.pagina100", () -> {
+            Esercizio2.Decodifiche d = new Esercizio2.Decodifiche(soloZeri, Esercizio2.PREDEFINITO);
+            d.salta(1_000_000_000_000_000L);
+            int lunghezza = 0;
+            for (int i = 0; i < 100 && d.hasNext(); i++) lunghezza += d.next().length();
+            return lunghezza;
+        }));
+
+        // Tabella grande: 300 codici binari lunghi da 1 a 12 compilati nell'automa
+        Esercizio2.Automa tabella = Generatori.tabellaCodici(300, 12, seme);
+        casi.add(new Caso("e2.contaDecodifiche.tabella300", () -> Esercizio2.contaDecodifiche(uniforme, tabella)));
+
+        // Lettura a blocchi dal file: stessa stringa uniforme scritta in un file temporaneo
+        String fileStringa = fileTemporaneo(uniforme);
+        if (fileStringa != null) {
+            casi.add(new Caso("e2.contaDecodificheStream.uniforme", () -> {
+                try {
+                    return Esercizio2.contaDecodificheStream(fileStringa);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+            int core = Runtime.getRuntime().availableProcessors();
+            casi.add(new Caso("e2.contaDecodificheParallelo.uniforme", () -> {
+                try {
+                    return Esercizio2.contaDecodificheParallelo(fileStringa, Esercizio2.PREDEFINITO, "int", 0, core, 1 << 16).length();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+            // Con la tabella grande i segmenti usano il Conteggio a più colonne invece della finestra a 4 bit
+            casi.add(new Caso("e2.contaDecodificheStream.tabella300", () -> {
+                try {
+                    return Esercizio2.contaDecodificheStream(fileStringa, tabella, Esercizio2.Conteggio.crea("int", 0, tabella.lunghezzaMax)).length();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+            casi.add(new Caso("e2.contaDecodificheParallelo.tabella300", () -> {
+                try {
+                    return Esercizio2.contaDecodificheParallelo(fileStringa, tabella, "int", 0, core, 1 << 16).length();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+
+        // Modalità batch: la stringa uniforme divisa in righe da 64 caratteri, un record per riga
+        StringBuilder record = new StringBuilder();
+        for (int i = 0; i < uniforme.length(); i += 64) {
+            record.append(uniforme, i, Math.min(uniforme.length(), i + 64)).append('\n');
+        }
+        String fileRighe = fileTemporaneo(record.toString());
+        if (fileRighe != null) {
+            int core = Runtime.getRuntime().availableProcessors();
+            casi.add(new Caso("e2.contaBatch.righe64", () -> {
+                try {
+                    return Esercizio2.contaBatch(fileRighe, false, Esercizio2.PREDEFINITO, "int", 0, core, Writer.nullWriter());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+
+        // Esercizio3
+        int lato = Math.max(2, (int) Math.sqrt(dim));
+        Esercizio3.Grafo[] grafi = {
+                Generatori.griglia(lato, lato, 9, seme),
+                Generatori.casuale(dim, 4 * dim, 100, seme),
+                Generatori.scaleFree(dim, 3, seme)
+        };
+        String[] nomiGrafi = {"griglia", "casuale", "scalefree"};
+        for (int i = 0; i < grafi.length; i++) {
+            Esercizio3.Grafo g = grafi[i];
+            String nome = nomiGrafi[i];
+            double[] dist = new double[g.n];
+            int[] prossima = {0};
+
+            Esercizio3.Workspace wsPq = new Esercizio3.Workspace(g);
+            Esercizio3.Workspace wsDary = new Esercizio3.Workspace(g, new Esercizio3.Motore(Esercizio3.Motore.Coda.DARY, 4, false, null));
+            casi.add(new Caso("e3.dijkstra.pq." + nome, () -> {
+                Esercizio3.dijkstra(g, prossima[0]++ % g.n, dist, wsPq);
+                return (long) dist[g.n - 1];
+            }));
+            casi.add(new Caso("e3.dijkstra.dary." + nome, () -> {
+                Esercizio3.dijkstra(g, prossima[0]++ % g.n, dist, wsDary);
+                return (long) dist[g.n - 1];
+            }));
+            if (g.pesiInteri()) {
+                Esercizio3.Workspace wsRadix = new Esercizio3.Workspace(g, new Esercizio3.Motore(Esercizio3.Motore.Coda.RADIX, 4, false, null));
+                casi.add(new Caso("e3.dijkstra.radix." + nome, () -> {
+                    Esercizio3.dijkstra(g, prossima[0]++ % g.n, dist, wsRadix);
+                    return (long) dist[g.n - 1];
+                }));
+            }
+
+            // findKPaths: distanze dalla sorgente 0 calcolate una volta, destinazioni a rotazione
+            double[] distS = new double[g.n];
+            Esercizio3.Workspace wsK = new Esercizio3.Workspace(g);
+            Esercizio3.dijkstra(g, 0, distS, wsK);
+            int[] t = {1};
+            casi.add(new Caso("e3.findKPaths." + nome, () -> {
+                int dest = t[0];
+                t[0] = t[0] + 1 < g.n ? t[0] + 1 : 1;
+                return Esercizio3.findKPaths(g, 0, dest, 3, distS, wsK).size();
+            }));
+        }
+
+        String[] righe = Generatori.righeArco(4096, dim, seme);
+        int[] r = {0};
+        casi.add(new Caso("e3.parseEdgeLine", () -> {
+            Esercizio3.EdgeData e = Esercizio3.parseEdgeLine(righe[r[0]++ & (righe.length - 1)]);
+            return e.u + e.v;
+        }));
+        return casi;
+    }
+
+    // Scrive il testo in un file temporaneo cancellato all'uscita; null se non è possibile.
+    static String fileTemporaneo(String testo) {
+        try {
+            File f = File.createTempFile("benchmark", ".txt");
+            f.deleteOnExit();
+            try (Writer w = new FileWriter(f)) {
+                w.write(testo);
+            }
+            return f.getPath();
+        } catch (IOException e) {
+            System.err.println("File temporaneo non disponibile: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Misura un caso: riscaldamento, poi le iterazioni misurate. I byte allocati e le raccolte
+     * del GC si contano solo sulle iterazioni misurate.
+     */
+    static Risultato misura(Caso caso, Parametri p) {
+        for (int i = 0; i < p.riscaldamento; i++) {
+            iterazione(caso.op, p.nsIterazione);
+        }
+
+        com.sun.management.ThreadMXBean thread = allocazioni();
+        long byteInizio = thread != null ? thread.getCurrentThreadAllocatedBytes() : 0;
+        long[] gcInizio = gc();
+
+        double somma = 0, minimo = Double.MAX_VALUE;
+        long opTotali = 0;
+        for (int i = 0; i < p.misure; i++) {
+            long[] it = iterazione(caso.op, p.nsIterazione);
+            double ns = (double) it[1] / it[0];
+            somma += ns;
+            minimo = Math.min(minimo, ns);
+            opTotali += it[0];
+        }
+
+        long[] gcFine = gc();
+        double byteOp = thread != null ? (double) (thread.getCurrentThreadAllocatedBytes() - byteInizio) / opTotali : Double.NaN;
+        return new Risultato(caso.nome, somma / p.misure, minimo, byteOp,
+                gcFine[0] - gcInizio[0], gcFine[1] - gcInizio[1]);
+    }
+
+    // Ripete l'operazione finché non passano almeno ns nanosecondi; restituisce {operazioni, ns trascorsi}.
+    static long[] iterazione(Operazione op, long ns) {
+        long ops = 0, somma = 0;
+        long inizio = System.nanoTime();
+        long trascorso;
+        do {
+            somma += op.esegui();
+            ops++;
+            trascorso = System.nanoTime() - inizio;
+        } while (trascorso < ns);
+        pozzo += somma;
+        return new long[]{ops, trascorso};
+    }
+
+    static com.sun.management.ThreadMXBean allocazioni() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean t = (com.sun.management.ThreadMXBean) bean;
+            if (t.isThreadAllocatedMemorySupported()) {
+                t.setThreadAllocatedMemoryEnabled(true);
+                return t;
+            }
+        }
+        return null;
+    }
+
+    // Raccolte totali e millisecondi totali di GC fino a questo momento, su tutti i collector.
+    static long[] gc() {
+        long conteggio = 0, ms = 0;
+        for (GarbageCollectorMXBean b : ManagementFactory.getGarbageCollectorMXBeans()) {
+            conteggio += Math.max(0, b.getCollectionCount());
+            ms += Math.max(0, b.getCollectionTime());
+        }
+        return new long[]{conteggio, ms};
+    }
+
+    /*
+     * File di riferimento: una riga per caso, "nome<TAB>ns/op<TAB>byte/op".
+     * Il confronto riporta la variazione percentuale del tempo medio rispetto al riferimento.
+     */
+    static void salva(String file, List<Risultato> risultati) throws IOException {
+        try (PrintWriter out = new PrintWriter(new FileWriter(file))) {
+            for (Risultato r : risultati) {
+                out.println(r.nome + "\t" + r.nsOp + "\t" + r.byteOp);
+            }
+        }
+    }
+
+    static Map<String, double[]> carica(String file) throws IOException {
+        Map<String, double[]> rif = new HashMap<>();
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            String riga;
+            while ((riga = in.readLine()) != null) {
+                String[] c = riga.split("\t");
+                if (c.length < 3) continue;
+                rif.put(c[0], new double[]{Double.parseDouble(c[1]), Double.parseDouble(c[2])});
+            }
+        }
+        return rif;
+    }
+
+    public static void main(String[] args) {
+        /*
+         * Opzioni:
+         * --dimensione N  numero di nodi di alberi e grafi (predefinito 100000); le stringhe hanno 10 N caratteri
+         * --seme s        seme dei generatori (predefinito 42)
+         * --rapido        meno iterazioni e più brevi, per una verifica veloce
+         * --filtro testo  esegue solo i casi il cui nome contiene testo
+         * --salva f       salva i risultati come riferimento nel file f
+         * --confronta f   confronta i risultati con il riferimento salvato in f
+         */
+        int dim = 100_000;
+        long seme = 42;
+        String filtro = null, fileSalva = null, fileConfronto = null;
+        Parametri p = new Parametri();
+        String uso = "Uso: java -cp . Benchmark [--dimensione N] [--seme s] [--rapido] [--filtro testo] [--salva f] [--confronta f]";
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--dimensione":
+                        dim = Integer.parseInt(args[++i]);
+                        break;
+                    case "--seme":
+                        seme = Long.parseLong(args[++i]);
+                        break;
+                    case "--rapido":
+                        p.riscaldamento = 2;
+                        p.misure = 3;
+                        p.nsIterazione = 50_000_000L;
+                        break;
+                    case "--filtro":
+                        filtro = args[++i];
+                        break;
+                    case "--salva":
+                        fileSalva = args[++i];
+                        break;
+                    case "--confronta":
+                        fileConfronto = args[++i];
+                        break;
+                    default:
+                        System.err.println(uso);
+                        return;
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            System.err.println(uso);
+            return;
+        }
+        if (dim < 2) {
+            System.err.println("La dimensione deve essere almeno 2");
+            return;
+        }
+
+        final int d = dim;
+        final long s = seme;
+        final String f = filtro, salva = fileSalva, confronto = fileConfronto;
+
+        /*
+         * Le visite di Esercizio1 sono ricorsive: sull'albero profondo la pila predefinita non basta,
+         * quindi i benchmark girano in un thread con una pila grande.
+         */
+        Thread t = new Thread(null, () -> esegui(d, s, f, p, salva, confronto), "benchmark", 1L << 30);
+        t.start();
+        try {
+            t.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static void esegui(int dim, long seme, String filtro, Parametri p, String fileSalva, String fileConfronto) {
+        Map<String, double[]> rif = null;
+        try {
+            if (fileConfronto != null) rif = carica(fileConfronto);
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Errore nella lettura del riferimento: " + e.getMessage());
+            return;
+        }
+
+        System.out.println("Java " + System.getProperty("java.version") + ", dimensione " + dim + ", seme " + seme
+                + ", " + p.riscaldamento + " + " + p.misure + " iterazioni da " + p.nsIterazione / 1_000_000 + " ms");
+        System.out.printf(Locale.ROOT, "%-34s %14s %14s %14s %6s %8s%s%n",
+                "caso", "ns/op", "min ns/op", "byte/op", "gc", "gc ms", rif != null ? "   vs rif" : "");
+
+        List<Risultato> risultati = new ArrayList<>();
+        for (Caso caso : casi(dim, seme)) {
+            if (filtro != null && !caso.nome.contains(filtro)) continue;
+            Risultato r = misura(caso, p);
+            risultati.add(r);
+
+            String delta = "";
+            if (rif != null) {
+                double[] v = rif.get(r.nome);
+                delta = v == null ? "   (nuovo)" : String.format(Locale.ROOT, " %+8.1f%%", 100 * (r.nsOp - v[0]) / v[0]);
+            }
+            System.out.printf(Locale.ROOT, "%-34s %14.1f %14.1f %14.1f %6d %8d%s%n",
+                    r.nome, r.nsOp, r.nsMin, r.byteOp, r.gcConteggio, r.gcMs, delta);
+        }
+        if (fileSalva != null) {
+            try {
+                salva(fileSalva, risultati);
+            } catch (IOException e) {
+                System.err.println("Errore nel salvataggio del riferimento: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -5,8 +5,15 @@
  * Email: arianna.dellaria@studio.unibo.it
  */
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 public class Esercizio1 {
@@ -57,22 +64,610 @@ public class Esercizio1 {
         }
     }
 
+    /**
+     * Tabella dei nomi: assegna a ogni nome distinto un id intero 0, 1, 2, ... nell'ordine di arrivo.
+     * I nomi sono byte UTF-8 consecutivi in un unico array (bytes[start[id]..start[id + 1])),
+     * cercati con indirizzamento aperto e scansione lineare: slots[h] = id + 1 (0 = vuoto).
+     * Non si crea una String per nodo: solo name(id), per i nomi da stampare.
+     */
+    static class NameTable {
+        byte[] bytes = new byte[1 << 16];
+        int[] start = new int[1 << 10];
+        int[] hashes = new int[1 << 10];
+        int[] slots = new int[1 << 11];
+        int size = 0;
+
+        // Id del nome in b[from..to), -1 se non è nella tabella (senza aggiungerlo).
+        int find(byte[] b, int from, int to) {
+            int h = hash(b, from, to);
+            int mask = slots.length - 1;
+            for (int x = h & mask; slots[x] != 0; x = (x + 1) & mask) {
+                int id = slots[x] - 1;
+                if (hashes[id] == h && Arrays.equals(bytes, start[id], start[id + 1], b, from, to)) return id;
+            }
+            return -1;
+        }
+
+        int id(byte[] b, int from, int to) {
+            int h = hash(b, from, to);
+            int mask = slots.length - 1;
+            int x = h & mask;
+            while (slots[x] != 0) {
+                int id = slots[x] - 1;
+                if (hashes[id] == h && Arrays.equals(bytes, start[id], start[id + 1], b, from, to)) return id;
+                x = (x + 1) & mask;
+            }
+            if (size + 2 > start.length) {
+                start = Arrays.copyOf(start, 2 * start.length);
+                hashes = Arrays.copyOf(hashes, start.length);
+            }
+            int end = start[size];
+            if (end + (to - from) > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, end + (to - from)));
+            }
+            System.arraycopy(b, from, bytes, end, to - from);
+            start[size + 1] = end + (to - from);
+            hashes[size] = h;
+            slots[x] = size + 1;
+            size++;
+            if (2 * size > slots.length) rehash();
+            return size - 1;
+        }
+
+        int id(String name) {
+            byte[] b = name.getBytes(StandardCharsets.UTF_8);
+            return id(b, 0, b.length);
+        }
+
+        String name(int id) {
+            return new String(bytes, start[id], start[id + 1] - start[id], StandardCharsets.UTF_8);
+        }
+
+        static int hash(byte[] b, int from, int to) {
+            int h = 0;
+            for (int i = from; i < to; i++) h = 31 * h + b[i];
+            h *= 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+
+        void rehash() {
+            slots = new int[2 * slots.length];
+            int mask = slots.length - 1;
+            for (int id = 0; id < size; id++) {
+                int x = hashes[id] & mask;
+                while (slots[x] != 0) x = (x + 1) & mask;
+                slots[x] = id + 1;
+            }
+        }
+    }
+
+    /**
+     * Destinazione delle righe lette da read(): un arco figlio-padre (nomi come intervalli del buffer)
+     * oppure una riga "?" di interrogazione, che restituisce false se non è supportata.
+     */
+    interface EdgeSink {
+        void addEdge(long line, byte[] b, int childFrom, int childTo, int parentFrom, int parentTo);
+
+        default boolean query() {
+            return false;
+        }
+    }
+
+    /**
+     * Albero su array di interi, pensato per file con decine di milioni di relazioni:
+     * i nodi sono gli id della NameTable e per ogni nodo v
+     *  - parent[v] = id del genitore, -1 per la radice (l'ultima relazione letta vince, come child.parent);
+     *  - firstChild[v] / nextSibling[v] = lista dei figli, costruita da parent[] in compute();
+     *  - descendants[v] e level[v] come i campi di Node e la mappa dei livelli.
+     * compute() non usa la ricorsione: una visita in ampiezza dalla radice assegna i livelli e
+     * lascia in order[] i nodi per livello crescente; scorrendo order[] all'indietro ogni nodo
+     * somma 1 + descendants[v] al genitore, che viene dopo tutti i suoi discendenti.
+     * Le relazioni duplicate non costano nulla (parent[] ha un solo valore per nodo), quindi
+     * la lettura è lineare anche con nodi con moltissimi figli.
+     */
+    static class ArrayTree implements EdgeSink {
+        final NameTable names = new NameTable();
+        int[] parent = new int[0];
+        int[] firstChild, nextSibling, descendants, level, order;
+        int reached = 0;
+
+        int size() {
+            return names.size;
+        }
+
+        void addEdge(String childName, String parentName) {
+            link(names.id(childName), names.id(parentName));
+        }
+
+        @Override
+        public void addEdge(long line, byte[] b, int childFrom, int childTo, int parentFrom, int parentTo) {
+            link(names.id(b, childFrom, childTo), names.id(b, parentFrom, parentTo));
+        }
+
+        void link(int c, int p) {
+            if (names.size > parent.length) {
+                int old = parent.length;
+                parent = Arrays.copyOf(parent, Math.max(2 * old, names.size));
+                Arrays.fill(parent, old, parent.length, -1);
+            }
+            parent[c] = p;
+        }
+
+        void compute(int root) {
+            int n = size();
+            firstChild = new int[n];
+            nextSibling = new int[n];
+            Arrays.fill(firstChild, -1);
+            for (int v = n - 1; v >= 0; v--) {
+                int p = parent[v];
+                if (p >= 0) {
+                    nextSibling[v] = firstChild[p];
+                    firstChild[p] = v;
+                }
+            }
+
+            level = new int[n];
+            order = new int[n];
+            int head = 0, tail = 0;
+            order[tail++] = root;
+            while (head < tail) {
+                int u = order[head++];
+                for (int c = firstChild[u]; c >= 0; c = nextSibling[c]) {
+                    level[c] = level[u] + 1;
+                    order[tail++] = c;
+                }
+            }
+            reached = tail;
+
+            descendants = new int[n];
+            for (int j = reached - 1; j > 0; j--) {
+                int v = order[j];
+                descendants[parent[v]] += 1 + descendants[v];
+            }
+        }
+
+        /**
+         * Scrive una riga "livello: nomi" per livello, come la stampa di mainRecursive: in order[] i nodi
+         * di uno stesso livello sono consecutivi, quindi basta un gruppo alla volta.
+         */
+        void report(Writer out) throws IOException {
+            int j = 0;
+            while (j < reached) {
+                int l = level[order[j]];
+                int end = j;
+                int maxDescendants = -1;
+                while (end < reached && level[order[end]] == l) {
+                    maxDescendants = Math.max(maxDescendants, descendants[order[end]]);
+                    end++;
+                }
+                List<String> bestNames = new ArrayList<>();
+                for (int x = j; x < end; x++) {
+                    if (descendants[order[x]] == maxDescendants) bestNames.add(names.name(order[x]));
+                }
+                Collections.sort(bestNames);
+                out.write(l + ": " + String.join(", ", bestNames) + System.lineSeparator());
+                j = end;
+            }
+        }
+    }
+
+    /**
+     * Albero costruito un arco alla volta, con la risposta "livello: nodi migliori" sempre disponibile.
+     * Come ArrayTree usa id interi e array (parent, firstChild/nextSibling, descendants, level), ma
+     * ogni arco figlio-padre è controllato e applicato appena letto:
+     *  - un figlio che ha già un padre diverso, o un arco che chiuderebbe un ciclo (il figlio è
+     *    antenato del padre), viene rifiutato con un messaggio e il numero di riga, prima di
+     *    aggiungere i suoi nodi: una relazione rifiutata non lascia traccia nell'albero;
+     *  - roots conta i nodi senza padre: quando un arco tra due nodi nuovi porta le radici da una
+     *    a due lo si segnala subito (un arco successivo può ancora collegarle);
+     *  - 1 + descendants[figlio] si somma a tutti gli antenati del padre, risalendo parent[];
+     *  - se il figlio era la radice di un sottoalbero già letto, i suoi nodi scendono di livello.
+     * Ogni Level tiene i propri nodi in una lista doppia (levelNext/levelPrev), il massimo dei
+     * discendenti e i nodi che lo raggiungono. I discendenti crescono soltanto, quindi un aumento
+     * aggiorna il massimo in O(1); solo se un nodo migliore lascia il livello il livello diventa
+     * dirty e il massimo si ricalcola alla prossima interrogazione.
+     * Un arco costa quindi O(profondità del padre), più i nodi spostati se si collega un sottoalbero:
+     * su una catena molto lunga la lettura completa è quadratica, e conviene ArrayTree.
+     */
+    static class IncrementalTree implements EdgeSink {
+
+        static class Level {
+            int head = -1;
+            int max = -1;
+            int[] best = new int[1];
+            int count = 0;
+            boolean dirty = false;
+        }
+
+        final NameTable names = new NameTable();
+        final Writer out;
+        int[] parent = new int[0], firstChild = new int[0], nextSibling = new int[0];
+        int[] descendants = new int[0], level = new int[0], levelNext = new int[0], levelPrev = new int[0];
+        int[] stack = new int[16];
+        final List<Level> levels = new ArrayList<>();
+        int roots = 0;
+
+        IncrementalTree(Writer out) {
+            this.out = out;
+        }
+
+        int size() {
+            return names.size;
+        }
+
+        void grow() {
+            int n = names.size;
+            if (n <= parent.length) return;
+            int old = parent.length, cap = Math.max(2 * old, Math.max(n, 1 << 10));
+            parent = Arrays.copyOf(parent, cap);
+            firstChild = Arrays.copyOf(firstChild, cap);
+            nextSibling = Arrays.copyOf(nextSibling, cap);
+            descendants = Arrays.copyOf(descendants, cap);
+            level = Arrays.copyOf(level, cap);
+            levelNext = Arrays.copyOf(levelNext, cap);
+            levelPrev = Arrays.copyOf(levelPrev, cap);
+            Arrays.fill(parent, old, cap, -1);
+            Arrays.fill(firstChild, old, cap, -1);
+        }
+
+        void addEdge(String childName, String parentName) {
+            byte[] c = childName.getBytes(StandardCharsets.UTF_8), p = parentName.getBytes(StandardCharsets.UTF_8);
+            byte[] b = Arrays.copyOf(c, c.length + p.length);
+            System.arraycopy(p, 0, b, c.length, p.length);
+            addEdge(0, b, 0, c.length, c.length, b.length);
+        }
+
+        @Override
+        public void addEdge(long line, byte[] b, int childFrom, int childTo, int parentFrom, int parentTo) {
+            // Prima si controlla la relazione, poi si aggiungono i nodi: una relazione rifiutata non lascia nulla.
+            int c = names.find(b, childFrom, childTo);
+            int p = names.find(b, parentFrom, parentTo);
+            if (c >= 0 && parent[c] >= 0) {
+                if (parent[c] != p) {
+                    System.err.println("Riga " + line + ": relazione ignorata, " + names.name(c) + " è già figlio di " + names.name(parent[c]) + ".");
+                }
+                return;
+            }
+            boolean cycle = Arrays.equals(b, childFrom, childTo, b, parentFrom, parentTo);
+            if (c >= 0 && p >= 0) {
+                for (int a = p; a >= 0 && !cycle; a = parent[a]) cycle = a == c;
+            }
+            if (cycle) {
+                System.err.println("Riga " + line + ": relazione ignorata, "
+                        + new String(b, childFrom, childTo - childFrom, StandardCharsets.UTF_8) + " è antenato di "
+                        + new String(b, parentFrom, parentTo - parentFrom, StandardCharsets.UTF_8) + " (ciclo).");
+                return;
+            }
+
+            boolean newChild = c < 0, newParent = p < 0;
+            if (newChild) c = names.id(b, childFrom, childTo);
+            if (newParent) p = names.id(b, parentFrom, parentTo);
+            grow();
+            if (newParent) {
+                enter(p, 0);
+                roots++;
+            }
+
+            parent[c] = p;
+            nextSibling[c] = firstChild[p];
+            firstChild[p] = c;
+            if (newChild) {
+                enter(c, level[p] + 1);
+                if (newParent && roots == 2) {
+                    System.err.println("Riga " + line + ": attenzione, " + names.name(p) + " è una seconda radice.");
+                }
+            } else {
+                roots--;
+                move(c, level[p] + 1 - level[c]);
+            }
+
+            int added = 1 + descendants[c];
+            for (int a = p; a >= 0; a = parent[a]) {
+                descendants[a] += added;
+                update(a);
+            }
+        }
+
+        Level levelOf(int l) {
+            while (levels.size() <= l) levels.add(new Level());
+            return levels.get(l);
+        }
+
+        // Inserisce v nella lista del livello l.
+        void enter(int v, int l) {
+            Level lv = levelOf(l);
+            level[v] = l;
+            levelPrev[v] = -1;
+            levelNext[v] = lv.head;
+            if (lv.head >= 0) levelPrev[lv.head] = v;
+            lv.head = v;
+            update(v);
+        }
+
+        // Toglie v dalla lista del suo livello; se era tra i migliori il livello va ricalcolato.
+        void leave(int v) {
+            Level lv = levels.get(level[v]);
+            if (levelPrev[v] >= 0) levelNext[levelPrev[v]] = levelNext[v];
+            else lv.head = levelNext[v];
+            if (levelNext[v] >= 0) levelPrev[levelNext[v]] = levelPrev[v];
+            if (descendants[v] == lv.max) lv.dirty = true;
+        }
+
+        // Sposta di delta livelli il sottoalbero di root (visita con pila esplicita).
+        void move(int root, int delta) {
+            if (delta == 0) return;
+            int top = 0;
+            stack[top++] = root;
+            while (top > 0) {
+                int v = stack[--top];
+                leave(v);
+                enter(v, level[v] + delta);
+                for (int c = firstChild[v]; c >= 0; c = nextSibling[c]) {
+                    if (top == stack.length) stack = Arrays.copyOf(stack, 2 * top);
+                    stack[top++] = c;
+                }
+            }
+        }
+
+        // descendants[v] è appena cambiato (o v è appena entrato nel livello).
+        void update(int v) {
+            Level lv = levels.get(level[v]);
+            if (lv.dirty) return;
+            int d = descendants[v];
+            if (d > lv.max) {
+                lv.max = d;
+                lv.count = 0;
+            } else if (d < lv.max) {
+                return;
+            }
+            if (lv.count == lv.best.length) lv.best = Arrays.copyOf(lv.best, 2 * lv.count);
+            lv.best[lv.count++] = v;
+        }
+
+        void recompute(Level lv) {
+            lv.max = -1;
+            lv.count = 0;
+            lv.dirty = false;
+            for (int v = lv.head; v >= 0; v = levelNext[v]) update(v);
+        }
+
+        /**
+         * Scrive la risposta corrente, con gli stessi controlli e la stessa stampa di mainRecursive;
+         * false (con il messaggio su stderr) se l'albero non ha esattamente una radice.
+         * Costa O(livelli + nodi migliori), più i livelli dirty da ricalcolare.
+         */
+        boolean report() throws IOException {
+            if (roots != 1) {
+                int first = -1;
+                for (int v = 0; v < size(); v++) {
+                    if (parent[v] >= 0) continue;
+                    if (first >= 0) {
+                        System.err.println("Errore: più di una radice trovata (" + names.name(first) + " e " + names.name(v) + ").");
+                        return false;
+                    }
+                    first = v;
+                }
+                System.err.println("Errore: nessuna radice trovata.");
+                return false;
+            }
+            for (int l = 0; l < levels.size(); l++) {
+                Level lv = levels.get(l);
+                if (lv.head < 0) continue;
+                if (lv.dirty) recompute(lv);
+                List<String> bestNames = new ArrayList<>();
+                for (int x = 0; x < lv.count; x++) bestNames.add(names.name(lv.best[x]));
+                Collections.sort(bestNames);
+                out.write(l + ": " + String.join(", ", bestNames) + System.lineSeparator());
+            }
+            out.flush();
+            return true;
+        }
+
+        // Riga "?": risposta corrente, in mezzo alla lettura.
+        @Override
+        public boolean query() {
+            try {
+                report();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Lettura per ArrayTree: il file è letto a blocchi di byte e ogni riga "Figlio, Padre" è
+     * divisa direttamente nel buffer, senza creare String. Le regole sono quelle di mainRecursive:
+     *  - trim() ai bordi (byte <= ' ', quindi anche il '\r' di "\r\n"), righe vuote e commenti ignorati;
+     *  - line.split(",") scarta le parti vuote finali, quindi la riga è valida se, tolte le virgole finali,
+     *    resta esattamente una virgola; figlio e padre sono poi ripuliti con trim().
+     * Restituisce il numero di righe non vuote e non commento (anche quelle ignorate).
+     * Le righe complete sono passate al sink appena lette, quindi funziona anche su System.in.
+     */
+    static long read(InputStream in, EdgeSink sink) throws IOException {
+        long lines = 0, number = 1;
+        byte[] buf = new byte[1 << 20];
+        int lim = 0;
+        boolean eof = false;
+        while (!eof || lim > 0) {
+            if (!eof) {
+                if (lim == buf.length) buf = Arrays.copyOf(buf, 2 * buf.length);
+                int r = in.read(buf, lim, buf.length - lim);
+                if (r < 0) eof = true;
+                else lim += r;
+            }
+            int pos = 0;
+            while (true) {
+                int nl = pos;
+                while (nl < lim && buf[nl] != '\n' && buf[nl] != '\r') nl++;
+                if ((nl == lim || (buf[nl] == '\r' && nl + 1 == lim)) && !eof) break;
+                if (line(number, buf, pos, nl, sink)) lines++;
+                // "\r\n" conta come un solo a capo: la riga vuota tra '\r' e '\n' viene saltata
+                if (nl < lim && (buf[nl] == '\n' || nl + 1 == lim || buf[nl + 1] != '\n')) number++;
+                pos = Math.min(nl + 1, lim);
+                if (pos == lim) break;
+            }
+            System.arraycopy(buf, pos, buf, 0, lim - pos);
+            lim -= pos;
+            if (eof) break;
+        }
+        return lines;
+    }
+
+    // La riga numero number del file, in buf[from..to); false se è vuota o un commento.
+    static boolean line(long number, byte[] buf, int from, int to, EdgeSink sink) {
+        while (from < to && (buf[from] & 0xFF) <= ' ') from++;
+        while (to > from && (buf[to - 1] & 0xFF) <= ' ') to--;
+        if (from == to || buf[from] == '#' || (to - from >= 2 && buf[from] == '/' && buf[from + 1] == '/')) {
+            return false;
+        }
+        if (to - from == 1 && buf[from] == '?' && sink.query()) return false;
+
+        int end = to;
+        while (end > from && buf[end - 1] == ',') end--;
+        int comma = from;
+        while (comma < end && buf[comma] != ',') comma++;
+        int other = comma + 1;
+        while (other < end && buf[other] != ',') other++;
+        if (comma >= end || other < end) {
+            System.out.println("Riga ignorata a causa di un formato non valido: \"" + new String(buf, from, to - from, StandardCharsets.UTF_8) + "\"");
+            return true;
+        }
+
+        int childFrom = from, childTo = comma, parentFrom = comma + 1, parentTo = end;
+        while (childTo > childFrom && (buf[childTo - 1] & 0xFF) <= ' ') childTo--;
+        while (parentFrom < parentTo && (buf[parentFrom] & 0xFF) <= ' ') parentFrom++;
+        while (parentTo > parentFrom && (buf[parentTo - 1] & 0xFF) <= ' ') parentTo--;
+        if (childFrom == childTo || parentFrom == parentTo) {
+            System.err.println("Riga ignorata a causa di campi vuoti: \"" + new String(buf, from, to - from, StandardCharsets.UTF_8) + "\"");
+            return true;
+        }
+        sink.addEdge(number, buf, childFrom, childTo, parentFrom, parentTo);
+        return true;
+    }
+
 
     public static void  main(String[] args) {
         /**
          * Inserisco da terminale il nome del file
+         * --ricorsivo usa il motore originale (oggetti Node e visite ricorsive);
+         * --incrementale applica e controlla ogni relazione appena letta (IncrementalTree): cicli e
+         *   padri doppi sono rifiutati subito, una riga "?" stampa la risposta corrente e
+         *   il file "-" è lo standard input;
+         * altrimenti si usa ArrayTree, che legge il file in un'unica passata senza tenerne le righe.
+         */
+        String uso = "Inserire: java -cp . Esercizio1 <file_input> [--ricorsivo | --incrementale]";
+        String inputFile = null;
+        boolean recursive = false, incremental = false;
+        for (String arg : args) {
+            if (arg.equals("--ricorsivo")) {
+                recursive = true;
+            } else if (arg.equals("--incrementale")) {
+                incremental = true;
+            } else if (!arg.startsWith("--") && inputFile == null) {
+                inputFile = arg;
+            } else {
+                System.err.println("Opzione non riconosciuta: " + arg);
+                System.exit(1);
+            }
+        }
+        if (inputFile == null) {
+            System.err.println(uso);
+            System.exit(1);
+        }
+
+        if (recursive) {
+            mainRecursive(inputFile);
+        } else if (incremental) {
+            mainIncremental(inputFile);
+        } else {
+            mainArray(inputFile);
+        }
+    }
+
+    /**
+     * Motore su array: stesse regole di lettura, stessi messaggi e stessa stampa di mainRecursive,
+     * ma ogni riga valida diventa subito un arco di ArrayTree.
+     */
+    static void mainArray(String inputFile) {
+        ArrayTree tree = new ArrayTree();
+        long lines;
+        try (InputStream in = new FileInputStream(inputFile)) {
+            lines = read(in, tree);
+        } catch (IOException e) {
+            System.out.println("Errore nella lettura del file: ");
+            System.out.println("Dettagli: " + e.getMessage());
+            return;
+        }
+
+        if (lines == 0) {
+            System.out.println("Errore: il file di input è vuoto o contiene solo commenti.");
+            System.exit(1);
+        }
+
+        int root = -1;
+        for (int v = 0; v < tree.size(); v++) {
+            if (tree.parent[v] < 0) {
+                if (root >= 0) {
+                    System.err.println("Errore: più di una radice trovata (" + tree.names.name(root) + " e " + tree.names.name(v) + ").");
+                    System.exit(1);
+                }
+                root = v;
+            }
+        }
+        if (root < 0) {
+            System.err.println("Errore: nessuna radice trovata.");
+            System.exit(1);
+        }
+
+        tree.compute(root);
+        try {
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+            tree.report(out);
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("Errore nella scrittura dei risultati: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Modalità incrementale: ogni riga valida è subito un arco di IncrementalTree; alla fine
+     * si stampa la risposta come negli altri motori.
+     */
+    static void mainIncremental(String inputFile) {
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+        IncrementalTree tree = new IncrementalTree(out);
+        long lines;
+        try (InputStream in = inputFile.equals("-") ? System.in : new FileInputStream(inputFile)) {
+            lines = read(in, tree);
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Errore nella lettura del file: ");
+            System.out.println("Dettagli: " + e.getMessage());
+            return;
+        }
+
+        if (lines == 0) {
+            System.out.println("Errore: il file di input è vuoto o contiene solo commenti.");
+            System.exit(1);
+        }
+        try {
+            if (!tree.report()) System.exit(1);
+        } catch (IOException e) {
+            System.err.println("Errore nella scrittura dei risultati: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Motore originale: righe in memoria, HashMap di Node e visite ricorsive.
+     */
+    static void mainRecursive(String inputFile) {
+        /**
          * Lettura riga-per-riga del file con Scanner
          * Ignora le righe vuote ed eventuali commenti
          * Eventuali errori che si possono verificare sono gestiti con il try-catch
          */
         List<String> inputLines = new ArrayList<>();
 
-        if (args.length < 1) {
-            System.err.println("Inserire: java -cp . Esercizio1 <file_input>");
-            //System.exit(1);
-        }
-        String inputFile = args[0];
-
         try (Scanner sc = new Scanner(new File(inputFile))) {
 
             while (sc.hasNextLine()) {
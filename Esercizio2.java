@@ -5,15 +5,40 @@
  * Email: arianna.dellaria@studio.unibo.it
  *
  * COSTO COMPUTAZIONALE
- * Il ciclo esterno scorre la stringa, quindi n iterazioni.
- * Il ciclo interno prova tutti gli 8 codici, e ogni controllo confronta al massimo 4 caratteri,
- * perché la lunghezza massima dei codici è 4.
- * Quindi il costo per posizione è costante e il costo totale è lineare, O(n).
+ * La tabella dei codici (quella predefinita o una caricata da file con --codici) è compilata una volta
+ * in un automa di Aho-Corasick (Automa), in tempo O(somma delle lunghezze dei codici * k),
+ * con k il numero di simboli distinti dei codici.
+ * Poi il ciclo scorre la stringa, quindi n iterazioni: a ogni posizione si fa una sola transizione
+ * dell'automa e si aggiunge un termine per ogni codice che termina lì, senza confrontare sottostringhe.
+ * Il costo totale è O(n + U), con U il numero complessivo di codici che terminano nelle varie posizioni;
+ * U è al più n volte il numero di codici, e con la tabella predefinita (8 codici lunghi al massimo 4)
+ * a ogni posizione terminano al più 4 codici, quindi il costo è lineare, O(n).
  */
 
 
 import java.io.*;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
 import java.util.Scanner;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.RecursiveTask;
 
 public class Esercizio2 {
 
@@ -21,22 +46,151 @@ public class Esercizio2 {
     private static final String[] codici = {
             "0", "00", "001", "010", "0010", "0100", "0110", "0001"
     };
+    private static final String[] lettere = {"A", "B", "C", "D", "E", "F", "G", "H"};
+
+    // Automa della tabella predefinita, usato quando non si passa --codici.
+    static final Automa PREDEFINITO = new Automa(lettere, codici);
+
+    // Dimensione del blocco letto dal canale in modalità streaming.
+    static final int BLOCCO = 1 << 20;
+
+    // Dimensione minima e massima di un segmento del file in modalità parallela (un segmento è mappato in una volta).
+    static final long SEGMENTO_MIN = 1 << 20;
+    static final long SEGMENTO_MAX = 1 << 30;
+
+    // Numero massimo di worker per --paralleli e --thread.
+    static final int MAX_WORKER = 1024;
+
+    // Record per blocco in modalità batch: un blocco è l'unità di lavoro di un worker.
+    static final int RECORD_PER_BLOCCO = 4096;
 
     public static void main(String[] args) {
 
         /*
          * Viene letto il file inserito da terminale e verificato che contenga una stringa binaria
          * S = stringa binaria letta dal file; trim() rimuove spazi/newline ai bordi.
-         * n = lunghezza di S.
-         * dec[] = numero di decodifiche per prefisso
-         *      ha dimensione n+1 perché conto anche la posizione 0 (prefisso vuoto) oltre alle posizioni 1..n.
-         * questo perchè quando un codice copre tutto il prefisso (cioè i = L), il contributo è dp[0].
+         * Il conteggio delle decodifiche è in contaDecodifiche.
+         *
+         * Opzioni (dopo il file di input):
+         * --stream  legge la stringa a blocchi dal canale del file senza tenerla in memoria
+         *           e conta con un buffer circolare di 5 valori (memoria costante).
+         * --conteggio int|esatto|mod|log  aritmetica del conteggio: int come l'originale (va in overflow),
+         *           esatto a precisione arbitraria, modulo --modulo m (predefinito 1000000007),
+         *           log approssimato (mantissa ed esponente in base 10).
+         * --codici f  carica la tabella dei codici dal file f, una riga "lettera codice" per codice,
+         *           con alfabeto e lunghezze qualsiasi (la stringa può contenere solo i simboli dei codici).
+         * --paralleli P  divide il file in segmenti e calcola su P worker (da 1 a MAX_WORKER) la matrice
+         *           di trasferimento di ogni segmento, poi le moltiplica in ordine; legge il file come --stream.
+         * --batch righe|binario  ogni riga (o record binario: lunghezza a 4 byte big-endian + simboli) è una
+         *           stringa a sé; stampa un risultato per record nello stesso ordine e su stderr i record al secondo.
+         *           --thread T distribuisce i blocchi di record su T worker (da 1 a MAX_WORKER).
+         * --decodifiche N  dopo il conteggio stampa fino a N decodifiche (sequenze di lettere) in ordine
+         *           lessicografico, a partire dalla k-esima con --da k (predefinito 1); vedi Decodifiche.
          */
+        String uso = "Inserire: java -cp . Esercizio2 <file_input> [--stream] [--paralleli P] [--batch righe|binario [--thread T]] [--conteggio int|esatto|mod|log] [--modulo m] [--codici f] [--decodifiche N [--da k]]";
         if (args.length < 1) {
-            System.err.println("Inserire: java -cp . Esercizio2 <file_input>");
+            System.err.println(uso);
             System.exit(1);
         }
-        final String inputFile = args[0];
+        String inputFile = null;
+        boolean streaming = false;
+        String modo = "int";
+        long modulo = 1_000_000_007L;
+        String fileCodici = null;
+        int paralleli = -1;
+        String batch = null;
+        int threads = 1;
+        long pagina = 0, da = 1;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--stream")) {
+                streaming = true;
+            } else if (args[i].equals("--conteggio") && i + 1 < args.length) {
+                modo = args[++i];
+                if (!modo.equals("int") && !modo.equals("esatto") && !modo.equals("mod") && !modo.equals("log")) {
+                    System.err.println("Modalità di conteggio non valida: " + modo);
+                    System.exit(1);
+                }
+            } else if (args[i].equals("--modulo") && i + 1 < args.length) {
+                modulo = numero("--modulo", args[++i], 1, Long.MAX_VALUE, uso);
+            } else if (args[i].equals("--paralleli") && i + 1 < args.length) {
+                paralleli = (int) numero("--paralleli", args[++i], 1, MAX_WORKER, uso);
+            } else if (args[i].equals("--batch") && i + 1 < args.length) {
+                batch = args[++i];
+                if (!batch.equals("righe") && !batch.equals("binario")) {
+                    System.err.println("Formato batch non valido: " + batch);
+                    System.exit(1);
+                }
+            } else if (args[i].equals("--thread") && i + 1 < args.length) {
+                threads = (int) numero("--thread", args[++i], 1, MAX_WORKER, uso);
+            } else if (args[i].equals("--codici") && i + 1 < args.length) {
+                fileCodici = args[++i];
+            } else if (args[i].equals("--decodifiche") && i + 1 < args.length) {
+                pagina = numero("--decodifiche", args[++i], 1, Long.MAX_VALUE, uso);
+            } else if (args[i].equals("--da") && i + 1 < args.length) {
+                da = numero("--da", args[++i], 1, Long.MAX_VALUE, uso);
+            } else if (!args[i].startsWith("--") && inputFile == null) {
+                inputFile = args[i];
+            } else {
+                System.err.println("Opzione non riconosciuta: " + args[i]);
+                System.exit(1);
+            }
+        }
+        if (inputFile == null) {
+            System.err.println(uso);
+            System.exit(1);
+        }
+        if (pagina > 0 && (streaming || paralleli > 0 || batch != null)) {
+            System.err.println("--decodifiche richiede la stringa in memoria: non si usa con --stream, --paralleli o --batch.");
+            System.exit(1);
+        }
+
+        Automa automa = PREDEFINITO;
+        if (fileCodici != null) {
+            try {
+                automa = Automa.carica(fileCodici);
+            } catch (IOException e) {
+                System.err.println("Errore nella lettura della tabella dei codici: " + fileCodici);
+                return;
+            } catch (IllegalArgumentException e) {
+                System.err.println(e.getMessage());
+                return;
+            }
+        }
+        boolean primitivo = modo.equals("int");
+
+        if (batch != null) {
+            try {
+                Writer out = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+                long inizio = System.nanoTime();
+                long record = contaBatch(inputFile, batch.equals("binario"), automa, modo, modulo, threads, out);
+                out.flush();
+                double secondi = (System.nanoTime() - inizio) / 1e9;
+                System.err.println(String.format(Locale.ROOT, "Record: %d in %.3f s (%.0f record/s)",
+                        record, secondi, record / Math.max(secondi, 1e-9)));
+            } catch (FileNotFoundException e) {
+                System.err.println("Errore: file non trovato: " + inputFile);
+            } catch (IllegalArgumentException e) {
+                System.err.println(e.getMessage());
+            } catch (IOException e) {
+                System.err.println("Errore nella lettura del file: " + e.getMessage());
+            }
+            return;
+        }
+
+        if (streaming || paralleli > 0) {
+            try {
+                if (paralleli > 0) System.out.println(contaDecodificheParallelo(inputFile, automa, modo, modulo, paralleli, SEGMENTO_MIN));
+                else if (primitivo) System.out.println(contaDecodificheStream(inputFile, automa));
+                else System.out.println(contaDecodificheStream(inputFile, automa, Conteggio.crea(modo, modulo, automa.lunghezzaMax)));
+            } catch (FileNotFoundException | java.nio.file.NoSuchFileException e) {
+                System.err.println("Errore: file non trovato: " + inputFile);
+            } catch (IllegalArgumentException e) {
+                System.err.println(e.getMessage());
+            } catch (IOException e) {
+                System.err.println("Errore nella lettura del file: " + e.getMessage());
+            }
+            return;
+        }
 
         String S;
         try (Scanner sc = new Scanner(new File(inputFile))) {
@@ -52,37 +206,1537 @@ public class Esercizio2 {
 
         for (int i = 0; i < S.length(); i++) {
             char c = S.charAt(i);
-            if (c != '0' && c != '1') {
-                System.err.println("File non valido: la stringa deve contenere solo 0 e 1.");
+            if (automa.simbolo(c) < 0) {
+                System.err.println(automa.nonValido);
+                return;
+            }
+        }
+
+        if (primitivo) System.out.println(contaDecodifiche(S, automa));
+        else System.out.println(contaDecodifiche(S, automa, Conteggio.crea(modo, modulo, automa.lunghezzaMax)));
+
+        if (pagina > 0) {
+            Decodifiche d = new Decodifiche(S, automa);
+            if (!d.salta(da - 1)) {
+                System.err.println("Le decodifiche sono meno di " + da + ".");
                 return;
             }
+            PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16));
+            for (long j = 0; j < pagina && d.hasNext(); j++) out.println(d.next());
+            out.flush();
+        }
+    }
+
+    /**
+     * Valore di un'opzione numerica, che deve essere un intero in [min, max].
+     * Un valore non numerico o fuori intervallo viene segnalato con la riga d'uso e il programma termina,
+     * come gli altri errori sugli argomenti.
+     */
+    static long numero(String opzione, String valore, long min, long max, String uso) {
+        try {
+            long v = Long.parseLong(valore);
+            if (v >= min && v <= max) return v;
+        } catch (NumberFormatException e) {
+            // stesso messaggio di un valore fuori intervallo
         }
+        System.err.println("Valore non valido per " + opzione + ": " + valore + " (intero da " + min + " a " + max + ").");
+        System.err.println(uso);
+        System.exit(1);
+        return min;
+    }
+
+    /**
+     *  Programmazione dinamica
+     *  dec[] = numero di decodifiche per prefisso
+     *      ha dimensione n+1 perché conto anche la posizione 0 (prefisso vuoto) oltre alle posizioni 1..n.
+     *  Caso base:
+     * - dec[0] = 1 È l’“unità” che permette alla somma dec[i] += dec[i-L] di funzionare anche quando un codice copre l’intero prefisso. Senza, che perda quei casi
+     *
+     * Caso generale:
+     * - Per ogni posizione i ∈ [1, S.length], si verifica se esiste un codice della tabella
+     *    che termina in S[i-1]. In tal caso si aggiunge:
+     *    dec[i] += dec[i - lunghezza(codice)]
+     *   I codici che terminano in S[i-1] sono le uscite dello stato dell'automa dopo aver letto S[0..i-1],
+     *   quindi non si confrontano sottostringhe e non si alloca nulla.
+     *
+     * - La risposta finale è dec[n], con n = lunghezza di S.
+     */
+    static int contaDecodifiche(String S) {
+        return contaDecodifiche(S, PREDEFINITO);
+    }
 
+    // S deve contenere solo simboli dell'alfabeto dell'automa.
+    static int contaDecodifiche(String S, Automa a) {
         int n = S.length();
         int[] dec = new int[n + 1];
+        int[] delta = a.delta, inizio = a.inizio, uscite = a.uscite;
+        int k = a.k;
+
+        dec[0] = 1;
+        int stato = 0;
+        for (int i = 1; i <= n; i++) {
+            stato = delta[stato * k + a.simbolo(S.charAt(i - 1))];
+            for (int j = inizio[stato]; j < inizio[stato + 1]; j++) {
+                dec[i] += dec[i - uscite[j]];
+            }
+        }
+        return dec[n];
+    }
+
+    /**
+     * Stessa programmazione dinamica con l'aritmetica scelta: invece di dec[] si usa l'anello
+     * di registri del Conteggio, che tiene solo gli ultimi lunghezzaMax + 1 valori.
+     */
+    static String contaDecodifiche(String S, Automa a, Conteggio dec) {
+        int n = S.length();
+        int k = a.k;
+        dec.inizia();
+        int stato = 0;
+        for (int i = 1; i <= n; i++) {
+            stato = a.delta[stato * k + a.simbolo(S.charAt(i - 1))];
+            dec.passo(a.uscite, a.inizio[stato], a.inizio[stato + 1]);
+        }
+        return dec.risultato();
+    }
+
+    /**
+     * Conteggio in streaming: la ricorrenza guarda indietro al massimo 4 posizioni
+     * (la lunghezza del codice più lungo), quindi bastano gli ultimi valori di dec[]:
+     * d1..d4 = dec[i-1]..dec[i-4] fanno da buffer circolare e scorrono di un posto a ogni bit.
+     * finestra contiene gli ultimi 4 bit letti; quanti[L][finestra] dice quanti codici di lunghezza L
+     * coincidono con gli ultimi L bit, quindi dec[i] = somma su L di quanti[L][finestra] * dec[i-L].
+     * Prima dell'inizio della stringa d1..d4 valgono 0, così i codici più lunghi del prefisso non contano.
+     * Questa versione vale per tabelle binarie con codici lunghi al massimo 4 (come quella predefinita);
+     * con le altre tabelle si passa all'automa con un anello di interi.
+     *
+     * Il file è letto a blocchi da LettoreSimboli; memoria O(1) rispetto alla lunghezza della stringa.
+     */
+    static int contaDecodificheStream(String inputFile) throws IOException {
+        return contaDecodificheStream(inputFile, PREDEFINITO);
+    }
+
+    static int contaDecodificheStream(String inputFile, Automa a) throws IOException {
+        if (!a.binariaCorta()) {
+            Interi dec = new Interi(a.lunghezzaMax, 1);
+            contaDecodificheStream(inputFile, a, dec);
+            return dec.v[dec.pos];
+        }
+        int[][] quanti = tabellaFinestre(a);
+        int[] q1 = quanti[1], q2 = quanti[2], q3 = quanti[3], q4 = quanti[4];
+
+        int d1 = 1, d2 = 0, d3 = 0, d4 = 0;
+        int finestra = 0;
+        try (LettoreSimboli in = new LettoreSimboli(inputFile, a)) {
+            byte[] bit = in.simboli;
+            int k;
+            while ((k = in.leggi()) >= 0) {
+                for (int j = 0; j < k; j++) {
+                    finestra = ((finestra << 1) | bit[j]) & 0xF;
+                    int d0 = q1[finestra] * d1 + q2[finestra] * d2 + q3[finestra] * d3 + q4[finestra] * d4;
+                    d4 = d3;
+                    d3 = d2;
+                    d2 = d1;
+                    d1 = d0;
+                }
+            }
+        }
+        return d1;
+    }
+
+    // Conteggio in streaming con l'automa e l'aritmetica del Conteggio, per qualsiasi tabella.
+    static String contaDecodificheStream(String inputFile, Automa a, Conteggio dec) throws IOException {
+        int[] delta = a.delta, inizio = a.inizio, uscite = a.uscite;
+        int ka = a.k;
+        dec.inizia();
+        int stato = 0;
+        try (LettoreSimboli in = new LettoreSimboli(inputFile, a)) {
+            byte[] simboli = in.simboli;
+            int k;
+            while ((k = in.leggi()) >= 0) {
+                for (int j = 0; j < k; j++) {
+                    stato = delta[stato * ka + simboli[j]];
+                    dec.passo(uscite, inizio[stato], inizio[stato + 1]);
+                }
+            }
+        }
+        return dec.risultato();
+    }
+
+    // quanti[L][f] = numero di codici di lunghezza L uguali agli ultimi L bit della finestra f.
+    static int[][] tabellaFinestre(Automa a) {
+        int[][] quanti = new int[5][16];
+        for (String code : a.codici) {
+            int L = code.length();
+            int valore = Integer.parseInt(code, 2);
+            for (int f = 0; f < 16; f++) {
+                if ((f & ((1 << L) - 1)) == valore) quanti[L][f]++;
+            }
+        }
+        return quanti;
+    }
+
+    /**
+     * Conteggio parallelo con matrici di trasferimento. Con L = lunghezzaMax lo stato dopo la posizione i è
+     * il vettore (dec[i], dec[i-1], ..., dec[i-L+1]), e ogni posizione lo trasforma in modo lineare:
+     * dec[i] = somma su codici che terminano in i di dec[i - lunghezza], gli altri valori scorrono.
+     * Quindi un segmento di posizioni corrisponde a una matrice L x L (prodotto delle matrici delle posizioni)
+     * e la risposta è l'elemento [0][0] del prodotto ordinato delle matrici dei segmenti, perché lo stato
+     * iniziale è (1, 0, ..., 0).
+     *
+     * Il file è diviso in segmenti di byte (almeno segmentoMin, al massimo SEGMENTO_MAX, circa 4 per worker),
+     * ognuno mappato in memoria e calcolato da un worker di un ForkJoinPool; le matrici sono poi moltiplicate
+     * con una riduzione ad albero nello stesso pool. Un segmento riparte l'automa dagli L - 1 byte precedenti,
+     * così riconosce anche i codici a cavallo del confine. La matrice si ottiene con la stessa
+     * programmazione dinamica su registri a più colonne: la colonna j parte dal vettore unitario e_j, ma
+     * serve solo se gli ultimi j simboli del contesto sono prefisso proprio di un codice (le altre colonne
+     * restano nulle e non si calcolano); il primo segmento segue quindi un solo vettore.
+     * Le regole di lettura sono le stesse di LettoreSimboli (prima riga, spazi solo ai bordi): ogni segmento
+     * riporta dove ha visto spazi e simboli e la validità della riga si decide dopo, in ordine.
+     */
+    static String contaDecodificheParallelo(String inputFile, Automa a, String modo, long modulo,
+                                            int thread, long segmentoMin) throws IOException {
+        if (!a.ascii()) {
+            throw new IllegalArgumentException("Con --paralleli i simboli dei codici devono essere caratteri ASCII.");
+        }
+        try (FileChannel ch = FileChannel.open(Paths.get(inputFile), StandardOpenOption.READ)) {
+            long dimensione = ch.size();
+            if (dimensione == 0) {
+                throw new IllegalArgumentException("File non valido: nessuna riga trovata.");
+            }
+            long quanti = Math.min(4L * thread, (dimensione + segmentoMin - 1) / segmentoMin);
+            quanti = Math.max(Math.max(quanti, 1), (dimensione + SEGMENTO_MAX - 1) / SEGMENTO_MAX);
+            long passo = (dimensione + quanti - 1) / quanti;
+
+            List<Segmento> segmenti = new ArrayList<>();
+            AtomicLong stop = new AtomicLong(Long.MAX_VALUE);
+            for (long da = 0; da < dimensione; da += passo) {
+                segmenti.add(new Segmento(ch, a, modo, modulo, da, Math.min(dimensione, da + passo), stop));
+            }
+
+            ForkJoinPool pool = new ForkJoinPool(thread);
+            try {
+                for (Segmento seg : segmenti) pool.execute(seg);
+
+                // Solo i segmenti fino al primo a capo (o al primo carattere non valido) servono:
+                // quelli successivi vengono annullati, o si fermano da soli appena vedono stop.
+                int fine = 0;
+                while (fine < segmenti.size()) {
+                    Segmento seg = segmenti.get(fine++);
+                    seg.join();
+                    if (seg.aCapo || seg.invalido) break;
+                }
+                for (int j = fine; j < segmenti.size(); j++) segmenti.get(j).cancel(false);
+                boolean[] simboliDopo = new boolean[fine + 1];
+                for (int j = fine - 1; j >= 0; j--) simboliDopo[j] = simboliDopo[j + 1] || segmenti.get(j).simboli;
+                boolean simboliPrima = false;
+                for (int j = 0; j < fine; j++) {
+                    Segmento seg = segmenti.get(j);
+                    boolean valido = seg.simboli
+                            ? !seg.interno && !(seg.spazioPrima && simboliPrima) && !(seg.spazioDopo && simboliDopo[j + 1])
+                            : !(seg.spazio && simboliPrima && simboliDopo[j + 1]);
+                    if (seg.invalido || !valido) {
+                        throw new IllegalArgumentException(a.nonValido);
+                    }
+                    simboliPrima |= seg.simboli;
+                }
+
+                Matrice[] matrici = new Matrice[fine];
+                for (int j = 0; j < fine; j++) matrici[j] = segmenti.get(j).matrice;
+                return pool.invoke(new Prodotto(matrici, 0, fine)).risultato();
+            } catch (RuntimeException e) {
+                if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+                throw e;
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Un segmento [da, a) di byte del file: calcola la propria matrice di trasferimento con un Conteggio
+     * che ha una colonna per ogni dec[-j] raggiungibile dal contesto (Automa.prefissi) e annota ciò che
+     * serve per controllare la riga:
+     * simboli visti, spazi prima del primo simbolo, tra due simboli (interno) o dopo l'ultimo,
+     * caratteri non validi e a capo (il segmento si ferma al primo).
+     * Chi trova un a capo o un carattere non valido scrive il proprio inizio in stop: i segmenti
+     * che iniziano dopo non servono e si fermano al blocco successivo, senza matrice.
+     */
+    @SuppressWarnings("serial") // i task non vengono mai serializzati
+    static class Segmento extends RecursiveTask<Matrice> {
+        final FileChannel ch;
+        final Automa automa;
+        final String modo;
+        final long modulo, da, a;
+        final AtomicLong stop;
+        Matrice matrice;
+        boolean simboli, interno, spazioPrima, spazioDopo, spazio, invalido, aCapo;
+
+        Segmento(FileChannel ch, Automa automa, String modo, long modulo, long da, long a, AtomicLong stop) {
+            this.ch = ch;
+            this.stop = stop;
+            this.automa = automa;
+            this.modo = modo;
+            this.modulo = modulo;
+            this.da = da;
+            this.a = a;
+        }
+
+        @Override
+        protected Matrice compute() {
+            try {
+                calcola();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return matrice;
+        }
+
+        // La riga finisce in un segmento precedente.
+        boolean superfluo() {
+            return da > stop.get();
+        }
+
+        void fermati() {
+            stop.accumulateAndGet(da, Math::min);
+        }
+
+        void calcola() throws IOException {
+            if (superfluo()) return;
+            if (modo.equals("int") && automa.binariaCorta()) {
+                calcolaFinestra();
+                return;
+            }
+            Automa au = automa;
+            int L = au.lunghezzaMax, ka = au.k;
+            int[] delta = au.delta, inizio = au.inizio, uscite = au.uscite;
+            byte[] mappa = LettoreSimboli.mappa(au, "--paralleli");
+
+            long contesto = Math.min(da, L - 1);
+            MappedByteBuffer m = ch.map(FileChannel.MapMode.READ_ONLY, da - contesto, a - da + contesto);
+            byte[] blocco = new byte[Math.min(1 << 16, m.capacity())];
+
+            // I byte del contesto portano l'automa nello stato giusto senza contare posizioni
+            int stato = 0;
+            for (int j = 0; j < contesto; j++) {
+                int v = mappa[m.get(j) & 0xFF];
+                stato = v >= 0 ? delta[stato * ka + v] : 0;
+            }
+            m.position((int) contesto);
+
+            // Solo i dec[-j] da cui un codice può attraversare il confine hanno una colonna:
+            // nel primo segmento (nessun contesto) è la sola colonna 0, come il conteggio sequenziale.
+            int[] colonne = au.prefissi(stato);
+            Conteggio dec = Conteggio.crea(modo, modulo, L, colonne.length);
+            dec.iniziaMatrice(colonne);
+
+            boolean pendente = false;
+            lettura:
+            while (m.hasRemaining()) {
+                if (superfluo()) return;
+                int n = Math.min(blocco.length, m.remaining());
+                m.get(blocco, 0, n);
+                for (int j = 0; j < n; j++) {
+                    byte b = blocco[j];
+                    int v = mappa[b & 0xFF];
+                    if (v >= 0) {
+                        if (pendente) interno = true;
+                        simboli = true;
+                        stato = delta[stato * ka + v];
+                        dec.passo(uscite, inizio[stato], inizio[stato + 1]);
+                    } else if (b == '\n' || b == '\r') {
+                        aCapo = true;
+                        fermati();
+                        break lettura;
+                    } else if ((b & 0xFF) <= ' ') {
+                        spazio = true;
+                        if (simboli) pendente = true;
+                        else spazioPrima = true;
+                    } else {
+                        invalido = true;
+                        fermati();
+                        break lettura;
+                    }
+                }
+            }
+            spazioDopo = pendente;
+            matrice = dec.matrice();
+        }
 
         /**
-         *  Programmazione dinamica
-         *  Caso base:
-         * - dec[0] = 1 È l’“unità” che permette alla somma dec[i] += dec[i-L] di funzionare anche quando un codice copre l’intero prefisso. Senza, che perda quei casi
-         *
-         * Caso generale:
-         * - Per ogni posizione i ∈ [1, S.length], si verifica se esiste un codice della tabella
-         *    che termina in S[i-1]. In tal caso si aggiunge:
-         *    dec[i] += dec[i - lunghezza(codice)]
-         *
-         * - La risposta finale è dec[n], con n = lunghezza di S.
+         * Come calcola(), per la modalità int con una tabella binaria di codici lunghi al massimo 4:
+         * la matrice 4 x 4 sta in 16 variabili locali (colonne 0..3 di dec[i-1]..dec[i-4]) e ogni bit
+         * le aggiorna con le tabelle della finestra, senza salti che dipendono dai dati.
          */
+        void calcolaFinestra() throws IOException {
+            int[][] quanti = tabellaFinestre(automa);
+            int[] q1 = quanti[1], q2 = quanti[2], q3 = quanti[3], q4 = quanti[4];
+            byte[] mappa = LettoreSimboli.mappa(automa, "--paralleli");
 
-        dec[0] = 1;
-        for (int i = 1; i <= n; i++) {
+            int a0 = 1, a1 = 0, a2 = 0, a3 = 0;
+            int b0 = 0, b1 = 1, b2 = 0, b3 = 0;
+            int c0 = 0, c1 = 0, c2 = 1, c3 = 0;
+            int d0 = 0, d1 = 0, d2 = 0, d3 = 1;
+
+            long contesto = Math.min(da, 3);
+            MappedByteBuffer m = ch.map(FileChannel.MapMode.READ_ONLY, da - contesto, a - da + contesto);
+            byte[] blocco = new byte[Math.min(1 << 16, m.capacity())];
+            int finestra = 0;
+            for (int j = 0; j < contesto; j++) {
+                int v = mappa[m.get(j) & 0xFF];
+                finestra = v >= 0 ? ((finestra << 1) | v) & 0xF : 0;
+            }
+            m.position((int) contesto);
+
+            boolean pendente = false;
+            lettura:
+            while (m.hasRemaining()) {
+                if (superfluo()) return;
+                int n = Math.min(blocco.length, m.remaining());
+                m.get(blocco, 0, n);
+                for (int j = 0; j < n; j++) {
+                    byte b = blocco[j];
+                    int v = mappa[b & 0xFF];
+                    if (v >= 0) {
+                        if (pendente) interno = true;
+                        simboli = true;
+                        finestra = ((finestra << 1) | v) & 0xF;
+                        int x1 = q1[finestra], x2 = q2[finestra], x3 = q3[finestra], x4 = q4[finestra];
+                        int n0 = x1 * a0 + x2 * b0 + x3 * c0 + x4 * d0;
+                        int n1 = x1 * a1 + x2 * b1 + x3 * c1 + x4 * d1;
+                        int n2 = x1 * a2 + x2 * b2 + x3 * c2 + x4 * d2;
+                        int n3 = x1 * a3 + x2 * b3 + x3 * c3 + x4 * d3;
+                        d0 = c0; d1 = c1; d2 = c2; d3 = c3;
+                        c0 = b0; c1 = b1; c2 = b2; c3 = b3;
+                        b0 = a0; b1 = a1; b2 = a2; b3 = a3;
+                        a0 = n0; a1 = n1; a2 = n2; a3 = n3;
+                    } else if (b == '\n' || b == '\r') {
+                        aCapo = true;
+                        fermati();
+                        break lettura;
+                    } else if ((b & 0xFF) <= ' ') {
+                        spazio = true;
+                        if (simboli) pendente = true;
+                        else spazioPrima = true;
+                    } else {
+                        invalido = true;
+                        fermati();
+                        break lettura;
+                    }
+                }
+            }
+            spazioDopo = pendente;
+
+            int[][] t = {{a0, a1, a2, a3}, {b0, b1, b2, b3}, {c0, c1, c2, c3}, {d0, d1, d2, d3}};
+            BigInteger[][] v = new BigInteger[4][4];
+            for (int r = 0; r < 4; r++) {
+                for (int j = 0; j < 4; j++) v[r][j] = BigInteger.valueOf(t[r][j] & 0xFFFFFFFFL);
+            }
+            matrice = new MatriceGrande(v, BigInteger.ONE.shiftLeft(32), true);
+        }
+    }
+
+    // Prodotto ordinato matrici[hi-1] x ... x matrici[lo], diviso a metà ricorsivamente.
+    @SuppressWarnings("serial") // i task non vengono mai serializzati
+    static class Prodotto extends RecursiveTask<Matrice> {
+        final Matrice[] matrici;
+        final int lo, hi;
+
+        Prodotto(Matrice[] matrici, int lo, int hi) {
+            this.matrici = matrici;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected Matrice compute() {
+            if (hi - lo == 1) return matrici[lo];
+            int mid = (lo + hi) >>> 1;
+            Prodotto sinistra = new Prodotto(matrici, lo, mid);
+            sinistra.fork();
+            Matrice destra = new Prodotto(matrici, mid, hi).compute();
+            return destra.per(sinistra.join());
+        }
+    }
+
+    /**
+     * Matrice di trasferimento L x L nell'aritmetica del conteggio. per(b) è il prodotto this x b;
+     * risultato() stampa l'elemento [0][0] come la modalità corrispondente.
+     */
+    abstract static class Matrice {
+        abstract Matrice per(Matrice b);
+
+        abstract String risultato();
+    }
+
+    /**
+     * Matrice di BigInteger per le modalità int, mod ed esatto: dopo ogni prodotto si riduce modulo 2^32
+     * (int, stampato con segno come l'originale), modulo m oppure non si riduce (esatto).
+     */
+    static class MatriceGrande extends Matrice {
+        final BigInteger[][] v;
+        final BigInteger modulo;
+        final boolean interi;
+
+        MatriceGrande(BigInteger[][] v, BigInteger modulo, boolean interi) {
+            this.v = v;
+            this.modulo = modulo;
+            this.interi = interi;
+        }
+
+        Matrice per(Matrice altra) {
+            BigInteger[][] b = ((MatriceGrande) altra).v;
+            int L = v.length;
+            BigInteger[][] c = new BigInteger[L][L];
+            for (int i = 0; i < L; i++) {
+                for (int j = 0; j < L; j++) {
+                    BigInteger x = BigInteger.ZERO;
+                    for (int k = 0; k < L; k++) {
+                        if (v[i][k].signum() != 0 && b[k][j].signum() != 0) x = x.add(v[i][k].multiply(b[k][j]));
+                    }
+                    c[i][j] = modulo != null ? x.mod(modulo) : x;
+                }
+            }
+            return new MatriceGrande(c, modulo, interi);
+        }
+
+        String risultato() {
+            return interi ? Integer.toString(v[0][0].intValue()) : v[0][0].toString();
+        }
+    }
+
+    // Matrice della modalità log: gli elementi sono log2 dei valori (-infinito per 0), il prodotto usa log-somma-esp.
+    static class MatriceLog extends Matrice {
+        final double[][] v;
+
+        MatriceLog(double[][] v) {
+            this.v = v;
+        }
+
+        Matrice per(Matrice altra) {
+            double[][] b = ((MatriceLog) altra).v;
+            int L = v.length;
+            double[][] c = new double[L][L];
+            for (int i = 0; i < L; i++) {
+                for (int j = 0; j < L; j++) {
+                    double max = Double.NEGATIVE_INFINITY;
+                    for (int k = 0; k < L; k++) max = Math.max(max, v[i][k] + b[k][j]);
+                    if (max == Double.NEGATIVE_INFINITY) {
+                        c[i][j] = max;
+                        continue;
+                    }
+                    double somma = 0;
+                    for (int k = 0; k < L; k++) somma += Math.pow(2, v[i][k] + b[k][j] - max);
+                    c[i][j] = max + Math.log(somma) / Math.log(2);
+                }
+            }
+            return new MatriceLog(c);
+        }
+
+        String risultato() {
+            double x = v[0][0];
+            return x == Double.NEGATIVE_INFINITY ? "0" : Logaritmico.formatta(x * Math.log10(2));
+        }
+    }
+
+    /**
+     * Elenco pigro delle decodifiche di S (sequenze di lettere) in ordine lessicografico delle lettere,
+     * senza mai costruirle tutte: il loro numero è esponenziale in n. Se una lettera ha più codici
+     * (--codici), a parità di lettera vale l'ordine dei codici nella tabella.
+     *
+     * - codiciDa[partenze[i]..partenze[i+1]) sono i codici che iniziano in S[i], come rango nell'ordine
+     *   delle lettere (lettera[r], lunghezza[r]), così l'ordinamento numerico è quello lessicografico;
+     *   si trovano con una passata dell'automa: un'uscita di lunghezza L dopo S[j] è un codice che inizia in j-L+1.
+     * - conta[i] = numero di decodifiche del suffisso S[i..n-1], calcolato all'indietro
+     *   (conta[n] = 1), saturato a Long.MAX_VALUE. Un codice si segue solo se conta[i + L] > 0,
+     *   quindi la visita non entra mai in un ramo senza decodifiche.
+     * - La decodifica corrente è il cammino scelta[0..profondita), con pos[d] = posizione in S del passo d.
+     *   next() la restituisce e passa alla successiva cambiando la scelta più profonda che ha ancora
+     *   un'alternativa valida, poi scende prendendo sempre la prima.
+     * - salta(k) posiziona sulla k-esima decodifica (da 0) sottraendo i conteggi dei rami scartati.
+     *   Con la saturazione il risultato resta esatto per ogni k < Long.MAX_VALUE.
+     *
+     * Memoria O(n) (per una tabella fissata), indipendente da quante decodifiche si consumano.
+     * S deve contenere solo simboli dell'alfabeto dell'automa.
+     */
+    static class Decodifiche implements Iterator<String> {
+        final int n;
+        final int[] partenze, codiciDa;
+        final String[] lettera;
+        final int[] lunghezza;
+        final long[] conta;
+        final int[] scelta, pos;
+        final boolean separa;
+        int profondita;
+        boolean pronta;
+
+        Decodifiche(String S, Automa a) {
+            this.n = S.length();
+
+            // Codici ordinati per lettera (a parità di lettera, nell'ordine della tabella)
+            int m = a.codici.length;
+            Integer[] perLettera = new Integer[m];
+            for (int r = 0; r < m; r++) perLettera[r] = r;
+            Arrays.sort(perLettera, (x, y) -> a.lettere[x].compareTo(a.lettere[y]));
+            int[] rango = new int[m];
+            lettera = new String[m];
+            lunghezza = new int[m];
+            for (int r = 0; r < m; r++) {
+                rango[perLettera[r]] = r;
+                lettera[r] = a.lettere[perLettera[r]];
+                lunghezza[r] = a.codici[perLettera[r]].length();
+            }
+
+            // Due passate dell'automa: prima si contano i codici per posizione di inizio, poi si riempiono
+            partenze = new int[n + 3];
+            int[] delta = a.delta, inizio = a.inizio, uscite = a.uscite;
+            int stato = 0;
+            for (int j = 0; j < n; j++) {
+                stato = delta[stato * a.k + a.simbolo(S.charAt(j))];
+                for (int e = inizio[stato]; e < inizio[stato + 1]; e++) partenze[j - uscite[e] + 3]++;
+            }
+            for (int i = 0; i <= n + 1; i++) partenze[i + 1] += partenze[i];
+            codiciDa = new int[partenze[n + 2]];
+            stato = 0;
+            for (int j = 0; j < n; j++) {
+                stato = delta[stato * a.k + a.simbolo(S.charAt(j))];
+                for (int e = inizio[stato]; e < inizio[stato + 1]; e++) {
+                    codiciDa[partenze[j - uscite[e] + 2]++] = rango[a.codiceUscite[e]];
+                }
+            }
+            // partenze[i + 1] ora è la fine dei codici di i, cioè l'inizio di quelli di i + 1
+            for (int i = 0; i < n; i++) {
+                Arrays.sort(codiciDa, partenze[i], partenze[i + 1]);
+            }
+
+            conta = new long[n + 1];
+            conta[n] = 1;
+            for (int i = n - 1; i >= 0; i--) {
+                long c = 0;
+                for (int x = partenze[i]; x < partenze[i + 1]; x++) {
+                    c += conta[i + lunghezza[codiciDa[x]]];
+                    if (c < 0) {
+                        c = Long.MAX_VALUE;
+                        break;
+                    }
+                }
+                conta[i] = c;
+            }
+
+            scelta = new int[n + 1];
+            pos = new int[n + 1];
+            boolean corte = true;
+            for (String l : a.lettere) corte &= l.length() == 1;
+            separa = !corte;
+            salta(0);
+        }
+
+        // Numero di decodifiche di S, saturato a Long.MAX_VALUE.
+        long totale() {
+            return conta[0];
+        }
+
+        /**
+         * Posiziona l'iteratore sulla k-esima decodifica (da 0), che sarà la prossima di next().
+         * Restituisce false (e l'iteratore resta vuoto) se le decodifiche sono al massimo k.
+         */
+        boolean salta(long k) {
+            profondita = 0;
+            pronta = k < conta[0];
+            if (!pronta) return false;
+            int i = 0;
+            while (i < n) {
+                for (int x = partenze[i]; ; x++) {
+                    int j = i + lunghezza[codiciDa[x]];
+                    if (k < conta[j]) {
+                        pos[profondita] = i;
+                        scelta[profondita++] = x;
+                        i = j;
+                        break;
+                    }
+                    k -= conta[j];
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return pronta;
+        }
+
+        @Override
+        public String next() {
+            if (!pronta) throw new NoSuchElementException();
+            StringBuilder sb = new StringBuilder();
+            for (int d = 0; d < profondita; d++) {
+                if (separa && d > 0) sb.append(' ');
+                sb.append(lettera[codiciDa[scelta[d]]]);
+            }
+            avanza();
+            return sb.toString();
+        }
+
+        // Passa alla decodifica successiva: ultima scelta con un'alternativa valida, poi la prima in ogni passo.
+        void avanza() {
+            while (profondita > 0) {
+                int d = profondita - 1;
+                int i = pos[d];
+                int x = scelta[d] + 1;
+                while (x < partenze[i + 1] && conta[i + lunghezza[codiciDa[x]]] == 0) x++;
+                if (x < partenze[i + 1]) {
+                    scelta[d] = x;
+                    i += lunghezza[codiciDa[x]];
+                    while (i < n) {
+                        int y = partenze[i];
+                        while (conta[i + lunghezza[codiciDa[y]]] == 0) y++;
+                        pos[profondita] = i;
+                        scelta[profondita++] = y;
+                        i += lunghezza[codiciDa[y]];
+                    }
+                    return;
+                }
+                profondita--;
+            }
+            pronta = false;
+        }
+    }
+
+    /**
+     * Modalità batch: ogni record del file è una stringa a sé e per ognuno si scrive una riga con il conteggio,
+     * oppure "-" se contiene simboli non validi (il motivo va su stderr con il numero del record).
+     * I record sono letti in blocchi di RECORD_PER_BLOCCO (BloccoRecord); con più thread ogni blocco
+     * è un compito del pool e ogni worker riusa il proprio Conteggio (ThreadLocal) per tutti i record.
+     * Restano in volo al massimo 2T blocchi: il più vecchio viene scritto appena è pronto,
+     * quindi l'output è nello stesso ordine dell'input e la memoria non dipende dalla dimensione del file.
+     * Restituisce il numero di record letti.
+     */
+    static long contaBatch(String inputFile, boolean binario, Automa a, String modo, long modulo,
+                           int thread, Writer out) throws IOException {
+        byte[] mappa = LettoreSimboli.mappa(a, "--batch");
+        long record = 0;
+        ExecutorService pool = thread > 1 ? Executors.newFixedThreadPool(thread) : null;
+        ThreadLocal<Conteggio> conteggi = ThreadLocal.withInitial(() -> Conteggio.crea(modo, modulo, a.lunghezzaMax));
+        ArrayDeque<Future<BloccoRecord>> inVolo = new ArrayDeque<>();
+        try (LettoreRecord in = new LettoreRecord(inputFile, binario)) {
+            while (true) {
+                BloccoRecord b = in.blocco(record + 1);
+                if (b == null) break;
+                record += b.n;
+                if (pool == null) {
+                    b.conta(a, mappa, conteggi.get());
+                    b.scrivi(out);
+                    continue;
+                }
+                inVolo.add(pool.submit(() -> {
+                    b.conta(a, mappa, conteggi.get());
+                    return b;
+                }));
+                if (inVolo.size() >= 2 * thread) attendi(inVolo.poll()).scrivi(out);
+            }
+            while (!inVolo.isEmpty()) attendi(inVolo.poll()).scrivi(out);
+        } finally {
+            if (pool != null) pool.shutdownNow();
+        }
+        out.flush();
+        return record;
+    }
+
+    static BloccoRecord attendi(Future<BloccoRecord> f) throws IOException {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Un blocco di record consecutivi: i simboli stanno tutti in dati[], il record j occupa
+     * dati[inizio[j]..inizio[j+1]). primo è il numero (da 1) del primo record del blocco.
+     * conta() scrive in uscita una riga per record.
+     */
+    static class BloccoRecord {
+        final long primo;
+        byte[] dati = new byte[1 << 16];
+        int[] inizio = new int[RECORD_PER_BLOCCO + 1];
+        int n = 0;
+        final StringBuilder uscita = new StringBuilder();
+        final StringBuilder errori = new StringBuilder();
+
+        BloccoRecord(long primo) {
+            this.primo = primo;
+        }
+
+        int fine() {
+            return inizio[n];
+        }
+
+        // Spazio in dati[] fino alla posizione fino (esclusa).
+        void riserva(int fino) {
+            if (fino > dati.length) {
+                dati = Arrays.copyOf(dati, Math.max(2 * dati.length, fino));
+            }
+        }
+
+        void conta(Automa a, byte[] mappa, Conteggio dec) {
+            int[] delta = a.delta, inizioUscite = a.inizio, uscite = a.uscite;
+            int k = a.k;
+            for (int j = 0; j < n; j++) {
+                dec.inizia();
+                int stato = 0;
+                boolean valido = true;
+                for (int x = inizio[j]; x < inizio[j + 1]; x++) {
+                    int v = mappa[dati[x] & 0xFF];
+                    if (v < 0) {
+                        valido = false;
+                        break;
+                    }
+                    stato = delta[stato * k + v];
+                    dec.passo(uscite, inizioUscite[stato], inizioUscite[stato + 1]);
+                }
+                if (valido) {
+                    uscita.append(dec.risultato()).append('\n');
+                } else {
+                    uscita.append("-\n");
+                    errori.append("Record ").append(primo + j).append(" non valido: ").append(a.soloSimboli).append('\n');
+                }
+            }
+        }
+
+        void scrivi(Writer out) throws IOException {
+            out.append(uscita);
+            if (errori.length() > 0) {
+                out.flush();
+                System.err.print(errori);
+            }
+        }
+    }
+
+    /**
+     * Legge i record del file batch con un buffer proprio, senza creare String:
+     * - righe: un record per riga ('\n', con '\r' finale tolto), senza gli spazi ai bordi come trim();
+     * - binario: lunghezza a 4 byte big-endian seguita dai simboli del record.
+     * blocco() restituisce il prossimo BloccoRecord (fino a RECORD_PER_BLOCCO record), null a fine file.
+     */
+    static class LettoreRecord implements Closeable {
+        final InputStream in;
+        final boolean binario;
+        final byte[] buf = new byte[BLOCCO];
+        int pos = 0, lim = 0;
+        boolean finito = false;
+
+        LettoreRecord(String inputFile, boolean binario) throws IOException {
+            this.in = new FileInputStream(inputFile);
+            this.binario = binario;
+        }
+
+        // Riempie di nuovo il buffer quando è esaurito; false a fine file.
+        boolean disponibili() throws IOException {
+            if (pos < lim) return true;
+            if (finito) return false;
+            int letti;
+            do {
+                letti = in.read(buf);
+            } while (letti == 0);
+            if (letti < 0) {
+                finito = true;
+                return false;
+            }
+            pos = 0;
+            lim = letti;
+            return true;
+        }
+
+        BloccoRecord blocco(long primo) throws IOException {
+            BloccoRecord b = new BloccoRecord(primo);
+            while (b.n < RECORD_PER_BLOCCO && (binario ? binario(b) : riga(b))) {
+                b.n++;
+            }
+            return b.n > 0 ? b : null;
+        }
+
+        // Aggiunge al blocco la prossima riga come record b.n; false se il file è finito.
+        boolean riga(BloccoRecord b) throws IOException {
+            if (!disponibili()) return false;
+            int da = b.fine();
+            // la riga può continuare oltre la fine del buffer: ogni pezzo va in coda a quelli già copiati
+            int fine = da;
+            while (disponibili()) {
+                int j = pos;
+                while (j < lim && buf[j] != '\n') j++;
+                b.riserva(fine + (j - pos));
+                System.arraycopy(buf, pos, b.dati, fine, j - pos);
+                fine += j - pos;
+                boolean aCapo = j < lim;
+                pos = aCapo ? j + 1 : j;
+                if (aCapo) break;
+            }
+            // trim(): spazi e caratteri di controllo ai bordi, compreso il '\r' di "\r\n"
+            int a = fine;
+            while (a > da && (b.dati[a - 1] & 0xFF) <= ' ') a--;
+            int x = da;
+            while (x < a && (b.dati[x] & 0xFF) <= ' ') x++;
+            if (x > da) System.arraycopy(b.dati, x, b.dati, da, a - x);
+            b.inizio[b.n + 1] = da + (a - x);
+            return true;
+        }
+
+        // Aggiunge al blocco il prossimo record binario; false se il file finisce esattamente prima del record.
+        boolean binario(BloccoRecord b) throws IOException {
+            if (!disponibili()) return false;
+            int lunghezza = 0;
+            for (int j = 0; j < 4; j++) {
+                if (!disponibili()) throw new EOFException("Record binario " + (b.primo + b.n) + " troncato");
+                lunghezza = (lunghezza << 8) | (buf[pos++] & 0xFF);
+            }
+            if (lunghezza < 0) throw new IOException("Lunghezza negativa nel record binario " + (b.primo + b.n));
+            b.riserva(b.fine() + lunghezza);
+            int scritti = 0;
+            while (scritti < lunghezza) {
+                if (!disponibili()) throw new EOFException("Record binario " + (b.primo + b.n) + " troncato");
+                int q = Math.min(lunghezza - scritti, lim - pos);
+                System.arraycopy(buf, pos, b.dati, b.fine() + scritti, q);
+                pos += q;
+                scritti += q;
+            }
+            b.inizio[b.n + 1] = b.fine() + lunghezza;
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Lettura a blocchi della prima riga del file da un FileChannel, con le stesse regole di
+     * nextLine().trim(): ci si ferma al primo '\n' o '\r' e si ignorano gli spazi ai bordi.
+     * leggi() riempie simboli[] con gli indici nell'alfabeto dell'automa dei caratteri del blocco successivo
+     * e ne restituisce il numero, oppure -1 a fine riga. Ogni byte è un carattere, quindi l'alfabeto
+     * deve essere ASCII. Se il file è vuoto o contiene altri caratteri lancia IllegalArgumentException.
+     */
+    static class LettoreSimboli implements Closeable {
+        final FileChannel ch;
+        final ByteBuffer buf = ByteBuffer.allocate(BLOCCO);
+        final byte[] simboli = buf.array();
+
+        final byte[] mappa;
+        final String nonValido;
+        boolean finita = false, iniziata = false, spazi = false, vuoto = true;
+
+        LettoreSimboli(String inputFile, Automa a) throws IOException {
+            this.mappa = mappa(a, "--stream");
+            this.nonValido = a.nonValido;
+            this.ch = FileChannel.open(Paths.get(inputFile), StandardOpenOption.READ);
+        }
+
+        // Byte -> indice del simbolo nell'alfabeto dell'automa, -1 se non è un simbolo.
+        // opzione è la modalità che legge a byte, per il messaggio d'errore (--stream, --paralleli, --batch).
+        static byte[] mappa(Automa a, String opzione) {
+            byte[] mappa = new byte[256];
+            Arrays.fill(mappa, (byte) -1);
+            for (int c = 0; c < a.k; c++) {
+                if (a.alfabeto[c] >= 128) {
+                    throw new IllegalArgumentException("Con " + opzione + " i simboli dei codici devono essere caratteri ASCII.");
+                }
+                mappa[a.alfabeto[c]] = (byte) c;
+            }
+            return mappa;
+        }
+
+        int leggi() throws IOException {
+            while (!finita) {
+                buf.clear();
+                int letti = ch.read(buf);
+                if (letti < 0) {
+                    finita = true;
+                    break;
+                }
+                if (letti > 0) vuoto = false;
+                // I simboli validi vengono compattati all'inizio dello stesso array
+                int k = 0;
+                for (int j = 0; j < letti; j++) {
+                    byte b = simboli[j];
+                    byte v = mappa[b & 0xFF];
+                    if (v >= 0) {
+                        if (spazi) {
+                            throw new IllegalArgumentException(nonValido);
+                        }
+                        iniziata = true;
+                        simboli[k++] = v;
+                    } else if (b == '\n' || b == '\r') {
+                        finita = true;
+                        break;
+                    } else if ((b & 0xFF) <= ' ') {
+                        spazi = iniziata;
+                    } else {
+                        throw new IllegalArgumentException(nonValido);
+                    }
+                }
+                if (k > 0) return k;
+            }
+            if (vuoto) {
+                throw new IllegalArgumentException("File non valido: nessuna riga trovata.");
+            }
+            return -1;
+        }
+
+        @Override
+        public void close() throws IOException {
+            ch.close();
+        }
+    }
+
+    /**
+     * Aritmetica del conteggio. Ogni modalità tiene un anello di R = lunghezzaMax + 1 registri:
+     * il registro corrente è dec[i], quelli precedenti dec[i-1]..dec[i-R+1].
+     * Un registro ha W colonne (W = 1 per il conteggio normale; per le matrici di trasferimento della
+     * modalità parallela la colonna c segue il contributo di dec[-colonne[c]]).
+     * - inizia(): dec[0] = 1 e tutti i valori precedenti a 0;
+     * - iniziaMatrice(colonne): colonna c di dec[-colonne[c]] = 1, tutto il resto a 0;
+     * - avanza(): passa alla posizione successiva e azzera il suo registro;
+     * - aggiungi(L): dec[i] += dec[i-L], colonna per colonna;
+     * - risultato(): dec[i] (colonna 0) come testo.
+     * La programmazione dinamica chiama solo questi metodi, quindi è la stessa per tutte le modalità.
+     */
+    abstract static class Conteggio {
+        final int R, W;
+        int pos = 0;
+        int[] colonne = {0};
+
+        Conteggio(int lunghezzaMax, int larghezza) {
+            this.R = lunghezzaMax + 1;
+            this.W = larghezza;
+        }
+
+        static Conteggio crea(String modo, long modulo, int lunghezzaMax) {
+            return crea(modo, modulo, lunghezzaMax, 1);
+        }
+
+        static Conteggio crea(String modo, long modulo, int lunghezzaMax, int larghezza) {
+            switch (modo) {
+                case "esatto":
+                    return new Esatto(lunghezzaMax, larghezza);
+                case "mod":
+                    return new Modulare(lunghezzaMax, larghezza, modulo);
+                case "log":
+                    return new Logaritmico(lunghezzaMax, larghezza);
+                default:
+                    return new Interi(lunghezzaMax, larghezza);
+            }
+        }
+
+        // Registro di dec[i-L]
+        final int indietro(int L) {
+            int j = pos - L;
+            return j >= 0 ? j : j + R;
+        }
+
+        final void avanza() {
+            pos = pos + 1 == R ? 0 : pos + 1;
+            azzera(pos);
+        }
+
+        // Una posizione intera: avanza() e poi aggiungi(L) per ogni lunghezza in lunghezze[da..a).
+        final void passo(int[] lunghezze, int da, int a) {
+            avanza();
+            for (int j = da; j < a; j++) aggiungi(lunghezze[j]);
+        }
+
+        void inizia() {
+            pos = 0;
+            for (int r = 0; r < R; r++) azzera(r);
+            uno(0, 0);
+        }
+
+        void iniziaMatrice(int[] colonne) {
+            this.colonne = colonne;
+            inizia();
+            azzera(0);
+            for (int c = 0; c < W; c++) uno(indietro(colonne[c]), c);
+        }
+
+        /**
+         * Matrice di trasferimento (R - 1) x (R - 1) dopo iniziaMatrice() e le posizioni di un segmento:
+         * l'elemento [r][colonne[c]] è la colonna c di dec[i-r], le colonne non seguite sono nulle.
+         */
+        abstract Matrice matrice();
+
+        abstract void azzera(int r);
+
+        abstract void uno(int r, int c);
+
+        abstract void aggiungi(int L);
+
+        abstract String risultato();
+    }
+
+    // Conteggi a valori interi (int, esatto, mod): la matrice di trasferimento è di BigInteger.
+    abstract static class ConteggioIntero extends Conteggio {
+
+        ConteggioIntero(int lunghezzaMax, int larghezza) {
+            super(lunghezzaMax, larghezza);
+        }
+
+        // Valore della colonna c del registro r come BigInteger.
+        abstract BigInteger grande(int r, int c);
+
+        // Modulo dell'aritmetica, null se è esatta.
+        BigInteger modulo() {
+            return null;
+        }
+
+        @Override
+        Matrice matrice() {
+            BigInteger[][] v = new BigInteger[R - 1][R - 1];
+            for (BigInteger[] riga : v) Arrays.fill(riga, BigInteger.ZERO);
+            for (int r = 0; r < R - 1; r++) {
+                for (int c = 0; c < W; c++) v[r][colonne[c]] = grande(indietro(r), c);
+            }
+            return new MatriceGrande(v, modulo(), this instanceof Interi);
+        }
+    }
+
+    // Interi a 32 bit come l'originale: il risultato è esatto solo modulo 2^32.
+    static class Interi extends ConteggioIntero {
+        final int[] v;
+
+        Interi(int lunghezzaMax, int larghezza) {
+            super(lunghezzaMax, larghezza);
+            v = new int[R * W];
+        }
+
+        void azzera(int r) {
+            if (W == 1) v[r] = 0;
+            else Arrays.fill(v, r * W, (r + 1) * W, 0);
+        }
+
+        void uno(int r, int c) {
+            v[r * W + c] = 1;
+        }
+
+        void aggiungi(int L) {
+            if (W == 1) {
+                v[pos] += v[indietro(L)];
+                return;
+            }
+            int d = pos * W, s = indietro(L) * W;
+            for (int c = 0; c < W; c++) v[d + c] += v[s + c];
+        }
+
+        String risultato() {
+            return Integer.toString(v[pos * W]);
+        }
+
+        @Override
+        BigInteger grande(int r, int c) {
+            return BigInteger.valueOf(v[r * W + c] & 0xFFFFFFFFL);
+        }
+
+        @Override
+        BigInteger modulo() {
+            return BigInteger.ONE.shiftLeft(32);
+        }
+    }
+
+    /**
+     * Conteggio esatto: ogni valore è un numero naturale in limb da 32 bit (little-endian)
+     * in un int[] che cresce per raddoppio e viene riusato quando l'anello gira, quindi la somma
+     * non alloca quasi mai (niente BigInteger nuovo a ogni passo). Il BigInteger si costruisce
+     * solo alla fine per stampare il risultato.
+     */
+    static class Esatto extends ConteggioIntero {
+        static final long MASCHERA = 0xFFFFFFFFL;
+        final int[][] limb;
+        final int[] len;
+
+        Esatto(int lunghezzaMax, int larghezza) {
+            super(lunghezzaMax, larghezza);
+            limb = new int[R * W][4];
+            len = new int[R * W];
+        }
+
+        void azzera(int r) {
+            Arrays.fill(len, r * W, (r + 1) * W, 0);
+        }
+
+        void uno(int r, int c) {
+            limb[r * W + c][0] = 1;
+            len[r * W + c] = 1;
+        }
+
+        void aggiungi(int L) {
+            int d = pos * W, s = indietro(L) * W;
+            for (int c = 0; c < W; c++) somma(d + c, s + c);
+        }
+
+        // Valore dst += valore src
+        void somma(int dst, int src) {
+            int ls = len[src];
+            if (ls == 0) return;
+            int ld = len[dst];
+            if (limb[dst].length <= ls) {
+                limb[dst] = Arrays.copyOf(limb[dst], Math.max(2 * limb[dst].length, ls + 1));
+            }
+            int[] d = limb[dst], a = limb[src];
+            long riporto = 0;
+            int j = 0;
+            int comune = Math.min(ld, ls);
+            for (; j < comune; j++) {
+                riporto += (d[j] & MASCHERA) + (a[j] & MASCHERA);
+                d[j] = (int) riporto;
+                riporto >>>= 32;
+            }
+            for (; j < ls; j++) {
+                riporto += a[j] & MASCHERA;
+                d[j] = (int) riporto;
+                riporto >>>= 32;
+            }
+            for (; riporto != 0 && j < ld; j++) {
+                riporto += d[j] & MASCHERA;
+                d[j] = (int) riporto;
+                riporto >>>= 32;
+            }
+            int n = Math.max(ld, j);
+            if (riporto != 0) {
+                if (n == d.length) {
+                    d = limb[dst] = Arrays.copyOf(d, 2 * d.length);
+                }
+                d[n++] = (int) riporto;
+            }
+            len[dst] = n;
+        }
+
+        BigInteger valore(int x) {
+            byte[] b = new byte[4 * len[x]];
+            for (int j = 0; j < len[x]; j++) {
+                int y = limb[x][j];
+                int o = b.length - 4 * (j + 1);
+                b[o] = (byte) (y >>> 24);
+                b[o + 1] = (byte) (y >>> 16);
+                b[o + 2] = (byte) (y >>> 8);
+                b[o + 3] = (byte) y;
+            }
+            return new BigInteger(1, b);
+        }
+
+        String risultato() {
+            return valore(pos * W).toString();
+        }
+
+        @Override
+        BigInteger grande(int r, int c) {
+            return valore(r * W + c);
+        }
+    }
+
+    // Conteggio modulo m (1 <= m < 2^63): la somma evita l'overflow confrontando con m - b.
+    static class Modulare extends ConteggioIntero {
+        final long m;
+        final long[] v;
+
+        Modulare(int lunghezzaMax, int larghezza, long m) {
+            super(lunghezzaMax, larghezza);
+            this.m = m;
+            v = new long[R * W];
+        }
+
+        void azzera(int r) {
+            if (W == 1) v[r] = 0;
+            else Arrays.fill(v, r * W, (r + 1) * W, 0);
+        }
+
+        void uno(int r, int c) {
+            v[r * W + c] = 1 % m;
+        }
+
+        void aggiungi(int L) {
+            if (W == 1) {
+                long a = v[pos], b = v[indietro(L)];
+                v[pos] = a >= m - b ? a - (m - b) : a + b;
+                return;
+            }
+            int d = pos * W, s = indietro(L) * W;
+            for (int c = 0; c < W; c++) {
+                long a = v[d + c], b = v[s + c];
+                v[d + c] = a >= m - b ? a - (m - b) : a + b;
+            }
+        }
+
+        String risultato() {
+            return Long.toString(v[pos * W]);
+        }
+
+        @Override
+        BigInteger grande(int r, int c) {
+            return BigInteger.valueOf(v[r * W + c]);
+        }
+
+        @Override
+        BigInteger modulo() {
+            return BigInteger.valueOf(m);
+        }
+    }
+
+    /**
+     * Conteggio approssimato: i registri sono double scalati da un esponente in base 2 comune.
+     * Quando un valore supera 2^512 tutto l'anello viene diviso per 2^512 (esatto, è una potenza
+     * di 2), così non si va mai in overflow e l'errore relativo resta quello dell'aritmetica double.
+     * Il risultato è stampato come mantissa ed esponente in base 10.
+     */
+    static class Logaritmico extends Conteggio {
+        static final double SOGLIA = 0x1p512;
+        final double[] v;
+        long esponente = 0;
+
+        Logaritmico(int lunghezzaMax, int larghezza) {
+            super(lunghezzaMax, larghezza);
+            v = new double[R * W];
+        }
+
+        @Override
+        void inizia() {
+            super.inizia();
+            esponente = 0;
+        }
+
+        void azzera(int r) {
+            if (W == 1) v[r] = 0;
+            else Arrays.fill(v, r * W, (r + 1) * W, 0);
+        }
+
+        void uno(int r, int c) {
+            v[r * W + c] = 1;
+        }
+
+        void aggiungi(int L) {
+            int d = pos * W, s = indietro(L) * W;
+            boolean scala = false;
+            for (int c = 0; c < W; c++) {
+                double x = v[d + c] + v[s + c];
+                v[d + c] = x;
+                scala |= x > SOGLIA;
+            }
+            if (scala) {
+                for (int j = 0; j < v.length; j++) v[j] = Math.scalb(v[j], -512);
+                esponente += 512;
+            }
+        }
+
+        String risultato() {
+            double x = v[pos * W];
+            if (x == 0) return "0";
+            return formatta(Math.log10(x) + esponente * Math.log10(2));
+        }
+
+        @Override
+        Matrice matrice() {
+            double[][] m = new double[R - 1][R - 1];
+            for (double[] riga : m) Arrays.fill(riga, Double.NEGATIVE_INFINITY);
+            for (int r = 0; r < R - 1; r++) {
+                for (int c = 0; c < W; c++) {
+                    double x = v[indietro(r) * W + c];
+                    m[r][colonne[c]] = x == 0 ? Double.NEGATIVE_INFINITY : Math.log(x) / Math.log(2) + esponente;
+                }
+            }
+            return new MatriceLog(m);
+        }
+
+        // Mantissa ed esponente in base 10 di un valore dato dal suo logaritmo in base 10.
+        static String formatta(double log10) {
+            double e = Math.floor(log10);
+            double mantissa = Math.pow(10, log10 - e);
+            // Evita mantisse come 10.000000 dovute all'arrotondamento
+            if (mantissa >= 9.9999995) {
+                mantissa = 1;
+                e++;
+            }
+            return String.format(Locale.ROOT, "%.6fe%+d", mantissa, (long) e);
+        }
+    }
+
+    /**
+     * Tabella dei codici compilata in un automa di Aho-Corasick sull'alfabeto dei simboli dei codici.
+     * - delta[s * k + c] è la transizione completa dallo stato s col simbolo c (mai indefinita);
+     * - uscite[inizio[s]..inizio[s+1]) sono le lunghezze di tutti i codici che sono suffisso della stringa
+     *   letta quando si è nello stato s (quelli dello stato più quelli raggiunti con i link di fallimento);
+     * - fallimento[s], profondita[s] e ramo[s] (s ha figli nel trie) servono a prefissi() per la modalità parallela.
+     * Dopo aver letto S[0..i-1] le uscite dello stato corrente sono esattamente i codici che terminano in S[i-1],
+     * e ogni codice uscito inizia dentro la stringa perché l'automa parte dalla radice.
+     * Costruzione O(somma delle lunghezze * k), memoria O(stati * k).
+     */
+    static class Automa {
+        final String[] lettere, codici;
+        final char[] alfabeto;
+        final int[] indice;
+        final int k;
+        final int lunghezzaMax;
+        final int[] delta;
+        final int[] inizio, uscite, codiceUscite;
+        final int[] fallimento, profondita;
+        final boolean[] ramo;
+        final String nonValido, soloSimboli;
+
+        Automa(String[] lettere, String[] codici) {
+            if (codici.length == 0) {
+                throw new IllegalArgumentException("Tabella dei codici vuota.");
+            }
+            this.lettere = lettere;
+            this.codici = codici;
+
+            TreeSet<Character> simboli = new TreeSet<>();
+            int totale = 0, massimo = 0;
             for (String code : codici) {
-                int lunghezza = code.length();
-                if (i - lunghezza >= 0 && S.substring(i - lunghezza, i).equals(code)) {
-                    dec[i] += dec[i - lunghezza];
+                if (code.isEmpty()) {
+                    throw new IllegalArgumentException("Tabella dei codici non valida: codice vuoto.");
+                }
+                for (int j = 0; j < code.length(); j++) simboli.add(code.charAt(j));
+                totale += code.length();
+                massimo = Math.max(massimo, code.length());
+            }
+            this.lunghezzaMax = massimo;
+            this.k = simboli.size();
+            this.alfabeto = new char[k];
+            int c = 0;
+            for (char x : simboli) alfabeto[c++] = x;
+            this.indice = new int[alfabeto[k - 1] + 1];
+            Arrays.fill(indice, -1);
+            for (c = 0; c < k; c++) indice[alfabeto[c]] = c;
+
+            // Trie dei codici: figli[s * k + c] = -1 se manca il figlio
+            int[] figli = new int[(totale + 1) * k];
+            Arrays.fill(figli, -1);
+            int[] prof = new int[totale + 1];
+            List<List<Integer>> proprie = new ArrayList<>();
+            proprie.add(new ArrayList<>());
+            int stati = 1;
+            for (int i = 0; i < codici.length; i++) {
+                String code = codici[i];
+                int s = 0;
+                for (int j = 0; j < code.length(); j++) {
+                    int x = s * k + indice[code.charAt(j)];
+                    if (figli[x] < 0) {
+                        prof[stati] = j + 1;
+                        figli[x] = stati++;
+                        proprie.add(new ArrayList<>());
+                    }
+                    s = figli[x];
+                }
+                proprie.get(s).add(i);
+            }
+
+            // Visita in ampiezza: link di fallimento, transizioni complete e uscite accumulate
+            // (per ogni uscita l'indice del codice in codici[]: la lunghezza va in uscite[])
+            this.delta = Arrays.copyOf(figli, stati * k);
+            this.fallimento = new int[stati];
+            this.profondita = Arrays.copyOf(prof, stati);
+            this.ramo = new boolean[stati];
+            int[] ordine = new int[stati];
+            int testa = 0, coda = 0;
+            ordine[coda++] = 0;
+            while (testa < coda) {
+                int s = ordine[testa++];
+                for (c = 0; c < k; c++) {
+                    int v = figli[s * k + c];
+                    int viaFallimento = s == 0 ? 0 : delta[fallimento[s] * k + c];
+                    if (v >= 0) {
+                        ramo[s] = true;
+                        fallimento[v] = viaFallimento;
+                        ordine[coda++] = v;
+                    } else {
+                        delta[s * k + c] = viaFallimento;
+                    }
+                }
+            }
+            List<List<Integer>> tutte = new ArrayList<>(proprie);
+            for (int j = 1; j < stati; j++) {
+                int s = ordine[j];
+                List<Integer> u = new ArrayList<>(proprie.get(s));
+                u.addAll(tutte.get(fallimento[s]));
+                tutte.set(s, u);
+            }
+            this.inizio = new int[stati + 1];
+            for (int s = 0; s < stati; s++) inizio[s + 1] = inizio[s] + tutte.get(s).size();
+            this.uscite = new int[inizio[stati]];
+            this.codiceUscite = new int[inizio[stati]];
+            for (int s = 0; s < stati; s++) {
+                int j = inizio[s];
+                for (int i : tutte.get(s)) {
+                    codiceUscite[j] = i;
+                    uscite[j++] = codici[i].length();
+                }
+            }
+
+            StringBuilder elenco = new StringBuilder();
+            for (c = 0; c < k; c++) {
+                if (c > 0) elenco.append(c == k - 1 ? " e " : ", ");
+                elenco.append(alfabeto[c]);
+            }
+            this.soloSimboli = "la stringa deve contenere solo " + elenco + ".";
+            this.nonValido = "File non valido: " + soloSimboli;
+        }
+
+        /**
+         * Carica una tabella da file: una riga "lettera codice" per codice; righe vuote e
+         * commenti dopo '#' sono ignorati.
+         */
+        static Automa carica(String file) throws IOException {
+            List<String> l = new ArrayList<>(), c = new ArrayList<>();
+            try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+                String riga;
+                int numero = 0;
+                while ((riga = in.readLine()) != null) {
+                    numero++;
+                    int hash = riga.indexOf('#');
+                    if (hash >= 0) riga = riga.substring(0, hash);
+                    riga = riga.trim();
+                    if (riga.isEmpty()) continue;
+                    String[] token = riga.split("\\s+");
+                    if (token.length != 2) {
+                        throw new IllegalArgumentException("Tabella dei codici non valida alla riga " + numero + ": " + riga);
+                    }
+                    l.add(token[0]);
+                    c.add(token[1]);
                 }
             }
+            return new Automa(l.toArray(new String[0]), c.toArray(new String[0]));
+        }
+
+        /**
+         * Lunghezze j, in ordine crescente, per cui gli ultimi j simboli letti (arrivati nello stato s)
+         * sono prefisso proprio di qualche codice: sono le profondità degli stati con figli lungo la
+         * catena dei link di fallimento, e 0 c'è sempre. Un codice che termina più avanti può iniziare
+         * solo subito dopo uno di questi j simboli.
+         */
+        int[] prefissi(int s) {
+            int[] p = new int[profondita[s] + 1];
+            int n = 0;
+            for (; s != 0; s = fallimento[s]) {
+                if (ramo[s]) p[n++] = profondita[s];
+            }
+            p[n++] = 0;
+            int[] r = new int[n];
+            for (int j = 0; j < n; j++) r[j] = p[n - 1 - j];
+            return r;
+        }
+
+        // Indice del carattere nell'alfabeto, -1 se non è un simbolo dei codici.
+        int simbolo(char c) {
+            return c < indice.length ? indice[c] : -1;
+        }
+
+        // Tutti i simboli dei codici sono caratteri ASCII, quindi si possono leggere byte per byte.
+        boolean ascii() {
+            return alfabeto[k - 1] < 128;
+        }
+
+        // Alfabeto {0, 1} e codici lunghi al massimo 4: si può usare la finestra di 4 bit.
+        boolean binariaCorta() {
+            return k == 2 && alfabeto[0] == '0' && alfabeto[1] == '1' && lunghezzaMax <= 4;
         }
-        System.out.println(dec[n]);
     }
 }
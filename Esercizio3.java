@@ -8,6 +8,10 @@
  * Una singola esecuzione di Dijkstra con coda di priorità binaria è:
  *    Un'esecuzione: O(m log n)
  *    Su tutte le sorgenti: O(n * m log n)
+ *    Con l'heap d-ario indicizzato (--heap dary) la coda contiene al più n nodi:
+ *    O(n * d log_d n + m log_d n) per sorgente, senza allocazioni.
+ *    Con pesi interi (--heap radix, scelto in automatico) il RadixHeap su distanze long costa
+ *    O(m + n log C) per sorgente, con C peso massimo.
  *
  * Per ogni coppia (s, t) si scansionano tutti gli archi --> O(m)
  * Numero di coppie: n(n-1) / 2 = O(n^2) perchè in analisi asintotica conta solo la crescita dominante
@@ -20,34 +24,23 @@
  *    Assorbito nel termine O(n^2 * m) di cui sopra
  *
  * Costo computazionale totale: O(n*m log n + n^2 * m).
+ *
+ * Memoria del grafo: rappresentazione CSR con array primitivi --> O(n + m).
  */
 
 import java.util.*;
+import java.util.concurrent.*;
 import java.io.*;
 
 public class Esercizio3 {
 
     /**
-     * Arco: classe che rappresenta un arco con nodo destinazione e peso
-     *          to -> nodo destinazione
-     *          w -> peso
      * PQNode: classe che rappresenta un nodo per la coda di priorità
      *          i -> indice del nodo
      *          dist -> distanza dalla sorgente a v
      *          Ritorna -1 se dist < di altre distanze, 1 se è maggiore e 0 se è uguale
      *          La coda estrae sempre il nodo con dist minore dalla sorgente
-     * edgeKey: Restituisce una chiave univoca "min-max" per l'arco non orientato (u, v).
-     *          Esempio: edgeKey(3, 9) -> "3-9"; edgeKey(9, 3) -> "3-9".
      */
-    static class Arco {
-        final int to;
-        final double w;
-        Arco(int to, double w) {
-            this.to = to;
-            this.w = w;
-        }
-    }
-
     static class PQNode implements Comparable<PQNode> {
         final int i;
         final double dist;
@@ -62,11 +55,405 @@ public class Esercizio3 {
         }
     }
 
-    static String edgeKey(int u, int v) {
-        if (u < v) {
-            return u + "-" + v;
-        } else {
-            return v + "-" + u;
+    /**
+     * IndexedHeap: min-heap d-ario indicizzato sui nodi, con chiavi double e decrease-key.
+     *          heap -> ids dei nodi in coda, organizzati come heap d-ario (figli di i: d*i+1 .. d*i+d)
+     *          pos -> posizione di ogni nodo in heap[], oppure -1 se il nodo non è in coda
+     *          key -> chiave (distanza provvisoria) di ogni nodo in coda
+     * Ogni nodo compare al più una volta: quando la distanza migliora si sposta il nodo verso l'alto
+     * invece di inserire una nuova voce, quindi la coda contiene al più n elementi e non alloca oggetti.
+     * Con d = 4 l'albero è più basso di quello binario e i figli di un nodo sono contigui in memoria.
+     * Dopo ogni sorgente la coda è vuota e pos[] è di nuovo tutto -1, quindi si riusa senza reinizializzarla.
+     */
+    static class IndexedHeap {
+        final int d;
+        final int[] heap;
+        final int[] pos;
+        final double[] key;
+        int size = 0;
+
+        IndexedHeap(int n, int d) {
+            this.d = d;
+            this.heap = new int[n];
+            this.pos = new int[n];
+            this.key = new double[n];
+            Arrays.fill(pos, -1);
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        // Inserisce v con chiave k, oppure ne diminuisce la chiave se v è già in coda.
+        void insertOrDecrease(int v, double k) {
+            int i = pos[v];
+            if (i < 0) {
+                i = size++;
+            } else if (k >= key[v]) {
+                return;
+            }
+            key[v] = k;
+            while (i > 0) {
+                int parent = (i - 1) / d;
+                int up = heap[parent];
+                if (key[up] <= k) break;
+                heap[i] = up;
+                pos[up] = i;
+                i = parent;
+            }
+            heap[i] = v;
+            pos[v] = i;
+        }
+
+        // Estrae il nodo con chiave minima.
+        int poll() {
+            int min = heap[0];
+            pos[min] = -1;
+            int last = heap[--size];
+            if (size > 0) {
+                double k = key[last];
+                int i = 0;
+                while (true) {
+                    int first = d * i + 1;
+                    if (first >= size) break;
+                    int end = Math.min(first + d, size);
+                    int best = first;
+                    for (int c = first + 1; c < end; c++) {
+                        if (key[heap[c]] < key[heap[best]]) best = c;
+                    }
+                    if (key[heap[best]] >= k) break;
+                    heap[i] = heap[best];
+                    pos[heap[i]] = i;
+                    i = best;
+                }
+                heap[i] = last;
+                pos[last] = i;
+            }
+            return min;
+        }
+
+        // Chiave minima in coda, senza estrarla.
+        double minKey() {
+            return key[heap[0]];
+        }
+
+        void clear() {
+            for (int i = 0; i < size; i++) pos[heap[i]] = -1;
+            size = 0;
+        }
+    }
+
+    /**
+     * RadixHeap: coda di priorità monotona su chiavi long, usata da dijkstraRadix quando tutti i pesi sono interi.
+     * Le chiavi estratte non diminuiscono mai (Dijkstra con pesi >= 0), quindi una chiave k sta nel secchio
+     * dato dal bit più alto in cui differisce dall'ultima chiave estratta (secchio 0 se uguale):
+     *          chiavi, nodi, size -> 65 secchi a crescita dinamica di coppie (chiave, nodo)
+     *          ultimo -> ultima chiave estratta
+     * Quando il secchio 0 è vuoto si prende il primo secchio non vuoto, se ne cerca il minimo e si ridistribuiscono
+     * le sue voci rispetto al nuovo ultimo: ogni voce scende di secchio, quindi al più 64 spostamenti per voce
+     * e inserimento/estrazione costano O(1) ammortizzato (O(log C) per voce).
+     * Come la PriorityQueue si inserisce una nuova voce a ogni miglioramento e le voci vecchie si scartano all'estrazione.
+     */
+    static class RadixHeap {
+        private final long[][] chiavi = new long[65][];
+        private final int[][] nodi = new int[65][];
+        private final int[] size = new int[65];
+        private int count = 0;
+        long ultimo = 0;
+
+        RadixHeap() {
+            for (int b = 0; b < 65; b++) {
+                chiavi[b] = new long[16];
+                nodi[b] = new int[16];
+            }
+        }
+
+        boolean isEmpty() {
+            return count == 0;
+        }
+
+        void clear() {
+            Arrays.fill(size, 0);
+            count = 0;
+            ultimo = 0;
+        }
+
+        private int bucket(long k) {
+            return k == ultimo ? 0 : 64 - Long.numberOfLeadingZeros(k ^ ultimo);
+        }
+
+        void push(long k, int v) {
+            add(bucket(k), k, v);
+            count++;
+        }
+
+        private void add(int b, long k, int v) {
+            int i = size[b]++;
+            if (i == chiavi[b].length) {
+                chiavi[b] = Arrays.copyOf(chiavi[b], 2 * i);
+                nodi[b] = Arrays.copyOf(nodi[b], 2 * i);
+            }
+            chiavi[b][i] = k;
+            nodi[b][i] = v;
+        }
+
+        // Estrae un nodo con chiave minima; la sua chiave resta in ultimo.
+        int poll() {
+            if (size[0] == 0) {
+                int b = 1;
+                while (size[b] == 0) b++;
+                long[] k = chiavi[b];
+                int[] v = nodi[b];
+                int len = size[b];
+                long min = k[0];
+                for (int i = 1; i < len; i++) min = Math.min(min, k[i]);
+                ultimo = min;
+                size[b] = 0;
+                for (int i = 0; i < len; i++) add(bucket(k[i]), k[i], v[i]);
+            }
+            count--;
+            return nodi[0][--size[0]];
+        }
+    }
+
+    /**
+     * Metriche: contatori e istogrammi dei tempi per capire dove va il tempo di un'esecuzione (--metriche json|prometheus).
+     * main crea le Metriche totali dell'esecuzione solo se l'opzione c'è e le passa nel Motore; ogni Workspace
+     * ha poi le sue (nessuna sincronizzazione nel ciclo interno), oppure null a metriche spente, e il codice di misura
+     * è protetto da "if (m != null)".
+     *          push, pop, scartati -> inserimenti ed estrazioni dalla coda di Dijkstra, estrazioni di voci vecchie
+     *          rilassati -> archi esaminati da Dijkstra
+     *          visitati, backtrack, bannati -> nodi aggiunti al cammino, ritorni indietro e archi bannati saltati da searchPath
+     *          dijkstra, estrazione -> istogrammi dei tempi per sorgente e per coppia
+     *          lettura, scrittura, byteScritti -> tempo di lettura del file, byte e tempi di ogni write dell'output
+     * Chi usa un Workspace (il task di un pool, il client del server, l'esecuzione sequenziale) ne sposta le misure
+     * nel totale con Motore.raccogli quando ha finito; i metodi del totale sono sincronizzati.
+     */
+    static final class Metriche {
+        long push, pop, scartati, rilassati;
+        long visitati, backtrack, bannati;
+        long byteScritti;
+        final Istogramma dijkstra = new Istogramma();
+        final Istogramma estrazione = new Istogramma();
+        final Istogramma lettura = new Istogramma();
+        final Istogramma scrittura = new Istogramma();
+
+        // Somma in queste le misure di m e azzera m, così lo stesso Workspace si può raccogliere più volte.
+        synchronized void raccogli(Metriche m) {
+            push += m.push;
+            pop += m.pop;
+            scartati += m.scartati;
+            rilassati += m.rilassati;
+            visitati += m.visitati;
+            backtrack += m.backtrack;
+            bannati += m.bannati;
+            byteScritti += m.byteScritti;
+            m.push = m.pop = m.scartati = m.rilassati = m.visitati = m.backtrack = m.bannati = m.byteScritti = 0;
+            Istogramma[] mie = {dijkstra, estrazione, lettura, scrittura};
+            Istogramma[] sue = {m.dijkstra, m.estrazione, m.lettura, m.scrittura};
+            for (int i = 0; i < mie.length; i++) {
+                mie[i].merge(sue[i]);
+                sue[i].azzera();
+            }
+        }
+
+        synchronized void lettura(long ns) {
+            lettura.add(ns);
+        }
+
+        synchronized void scrittura(long bytes, long ns) {
+            byteScritti += bytes;
+            scrittura.add(ns);
+        }
+
+        /**
+         * Istogramma dei tempi in nanosecondi a secchi di potenze di 2: il secchio i conta le durate
+         * in (2^(i-1), 2^i] ns, più numero, somma e massimo. Il report riporta solo i secchi da primo() a ultimo()
+         * (nel json solo quelli non vuoti).
+         */
+        static final class Istogramma {
+            final long[] secchi = new long[64];
+            long conteggio, somma, max;
+
+            void add(long ns) {
+                secchi[ns <= 1 ? 0 : 64 - Long.numberOfLeadingZeros(ns - 1)]++;
+                conteggio++;
+                somma += ns;
+                max = Math.max(max, ns);
+            }
+
+            void merge(Istogramma h) {
+                for (int i = 0; i < 64; i++) secchi[i] += h.secchi[i];
+                conteggio += h.conteggio;
+                somma += h.somma;
+                max = Math.max(max, h.max);
+            }
+
+            void azzera() {
+                Arrays.fill(secchi, 0);
+                conteggio = somma = max = 0;
+            }
+
+            int primo() {
+                int i = 0;
+                while (i < 63 && secchi[i] == 0) i++;
+                return i;
+            }
+
+            int ultimo() {
+                int i = 63;
+                while (i > 0 && secchi[i] == 0) i--;
+                return i;
+            }
+        }
+
+        // Report delle metriche raccolte, in formato "json" oppure "prometheus".
+        synchronized String report(String formato) {
+            long[] c = {push, pop, scartati, rilassati, visitati, backtrack, bannati, byteScritti};
+            String[] nomi = {"heap_push", "heap_pop", "pop_scartati", "archi_rilassati",
+                    "dfs_nodi_visitati", "dfs_backtrack", "archi_bannati", "byte_scritti"};
+            String[] fasi = {"lettura", "dijkstra", "estrazione", "scrittura"};
+            Istogramma[] h = {lettura, dijkstra, estrazione, scrittura};
+
+            StringBuilder sb = new StringBuilder();
+            if (formato.equals("json")) {
+                sb.append("{\n  \"contatori\": {");
+                for (int i = 0; i < nomi.length; i++) {
+                    sb.append(i > 0 ? ", " : "").append('"').append(nomi[i]).append("\": ").append(c[i]);
+                }
+                sb.append("},\n  \"fasi\": {");
+                for (int f = 0; f < fasi.length; f++) {
+                    sb.append(f > 0 ? "," : "").append("\n    \"").append(fasi[f]).append("\": {\"conteggio\": ").append(h[f].conteggio)
+                      .append(", \"somma_ns\": ").append(h[f].somma).append(", \"max_ns\": ").append(h[f].max)
+                      .append(", \"secchi\": [");
+                    for (int i = h[f].primo(), ultimo = h[f].ultimo(); h[f].conteggio > 0 && i <= ultimo; i++) {
+                        if (h[f].secchi[i] == 0) continue;
+                        sb.append(sb.charAt(sb.length() - 1) == '[' ? "" : ", ").append("{\"le_ns\": ").append(1L << i).append(", \"conteggio\": ").append(h[f].secchi[i]).append('}');
+                    }
+                    sb.append("]}");
+                }
+                sb.append("\n  }\n}\n");
+            } else {
+                for (int i = 0; i < nomi.length; i++) {
+                    sb.append("# TYPE es3_").append(nomi[i]).append("_total counter\n");
+                    sb.append("es3_").append(nomi[i]).append("_total ").append(c[i]).append('\n');
+                }
+                sb.append("# TYPE es3_fase_secondi histogram\n");
+                for (int f = 0; f < fasi.length; f++) {
+                    long cumulato = 0;
+                    for (int i = h[f].primo(), ultimo = h[f].ultimo(); h[f].conteggio > 0 && i <= ultimo; i++) {
+                        cumulato += h[f].secchi[i];
+                        sb.append("es3_fase_secondi_bucket{fase=\"").append(fasi[f]).append("\",le=\"").append((1L << i) / 1e9).append("\"} ").append(cumulato).append('\n');
+                    }
+                    sb.append("es3_fase_secondi_bucket{fase=\"").append(fasi[f]).append("\",le=\"+Inf\"} ").append(h[f].conteggio).append('\n');
+                    sb.append("es3_fase_secondi_sum{fase=\"").append(fasi[f]).append("\"} ").append(h[f].somma / 1e9).append('\n');
+                    sb.append("es3_fase_secondi_count{fase=\"").append(fasi[f]).append("\"} ").append(h[f].conteggio).append('\n');
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Motore: le scelte su come calcolare, fatte da main con le opzioni e passate esplicitamente
+     * a ogni Workspace, così chi crea un Workspace (anche Benchmark) sa sempre cosa ottiene.
+     *          coda -> coda di Dijkstra (vedi Coda)
+     *          arity -> arietà dell'IndexedHeap, usata solo con Coda.DARY
+     *          flusso -> cammini estratti con FlowPaths (--estrazione flusso) invece della DFS greedy
+     *          metriche -> Metriche totali dell'esecuzione (--metriche), null se spente
+     * PREDEFINITO è la PriorityQueue con la DFS e senza metriche, come nel programma originale.
+     */
+    static final class Motore {
+        static final Motore PREDEFINITO = new Motore(Coda.PQ, 4, false, null);
+
+        /**
+         * PQ -> PriorityQueue<PQNode> con inserimento pigro (dijkstraQueue)
+         * DARY -> IndexedHeap d-ario con decrease-key (dijkstraHeap)
+         * RADIX -> RadixHeap su distanze long (dijkstraRadix), che ripiega su PQ se incontra un peso non intero
+         */
+        enum Coda { PQ, DARY, RADIX }
+
+        final Coda coda;
+        final int arity;
+        final boolean flusso;
+        final Metriche metriche;
+
+        Motore(Coda coda, int arity, boolean flusso, Metriche metriche) {
+            this.coda = coda;
+            this.arity = arity;
+            this.flusso = flusso;
+            this.metriche = metriche;
+        }
+
+        // Lo stesso Motore con un'altra coda.
+        Motore conCoda(Coda altra) {
+            return new Motore(altra, arity, flusso, metriche);
+        }
+
+        // Sposta nelle metriche totali quelle di un Workspace creato con questo Motore.
+        void raccogli(Workspace ws) {
+            if (metriche != null) metriche.raccogli(ws.metriche);
+        }
+    }
+
+    /**
+     * Workspace: buffer riutilizzabili di un singolo worker (un thread).
+     *          dist -> riga delle distanze dalla sorgente corrente
+     *          settled -> nodi già estratti dalla coda
+     *          pq -> coda di priorità di Dijkstra con inserimento "pigro", svuotata a ogni sorgente
+     *          heap -> in alternativa a pq, heap d-ario indicizzato con decrease-key (null se si usa pq)
+     *          radix, ldist -> in alternativa, RadixHeap e distanze long se motore.coda è RADIX e g.pesiInteri()
+     *                 (null altrimenti: allora si usa pq)
+     *          on, pathNodes, pathNext -> stato della DFS iterativa di searchPath
+     *          banned, epoch -> archi già usati nei cammini della coppia corrente (banned[id] == epoch)
+     *          flow -> estrazione con FlowPaths se motore.flusso, altrimenti null
+     *          metriche -> contatori di questo worker se motore.metriche non è null, altrimenti null
+     * Ogni thread ha il proprio Workspace, quindi non serve sincronizzazione.
+     * La coda usata è quella scelta da motore.coda; pq c'è sempre, perché dijkstraRadix ci ripiega
+     * sopra se una distanza supera 2^53.
+     */
+    static class Workspace {
+        final double[] dist;
+        final boolean[] settled;
+        final PriorityQueue<PQNode> pq = new PriorityQueue<>();
+        final IndexedHeap heap;
+        final RadixHeap radix;
+        final long[] ldist;
+        final boolean[] on;
+        final int[] pathNodes;
+        final int[] pathNext;
+        final int[] banned;
+        final FlowPaths flow;
+        final Metriche metriche;
+        int epoch = 0;
+
+        Workspace(Grafo g) {
+            this(g, Motore.PREDEFINITO);
+        }
+
+        Workspace(Grafo g, Motore motore) {
+            int n = g.n;
+            boolean interi = motore.coda == Motore.Coda.RADIX && g.pesiInteri();
+            this.dist = new double[n];
+            this.settled = new boolean[n];
+            this.heap = motore.coda == Motore.Coda.DARY ? new IndexedHeap(n, motore.arity) : null;
+            this.radix = interi ? new RadixHeap() : null;
+            this.ldist = interi ? new long[n] : null;
+            this.on = new boolean[n];
+            this.pathNodes = new int[n];
+            this.pathNext = new int[n];
+            this.banned = new int[g.edgeCount()];
+            this.flow = motore.flusso ? new FlowPaths(g) : null;
+            this.metriche = motore.metriche != null ? new Metriche() : null;
+        }
+
+        // Nuovo epoch per una coppia: quando il contatore si esaurisce si azzera banned[] una volta sola.
+        int nextEpoch() {
+            if (epoch == Integer.MAX_VALUE) {
+                Arrays.fill(banned, 0);
+                epoch = 0;
+            }
+            return ++epoch;
         }
     }
 
@@ -129,229 +516,2911 @@ public class Esercizio3 {
     }
 
     /**
-     * ALGORITMO DI DIJKSTRA
-     * Calcola le distanze minime da una sorgente s a tutti i nodi del grafo g.
-     * Restituisce un array dist[] tale che dist[v] è il costo minimo da s a v,
-     * oppure +infinito se v non è raggiungibile.
+     * Grafo: rappresentazione compatta CSR (compressed sparse row) del grafo non orientato.
+     *          offsets -> gli archi uscenti da u occupano le posizioni [offsets[u], offsets[u+1])
+     *          targets -> nodo destinazione di ogni arco orientato
+     *          weights -> peso di ogni arco orientato
+     *          edgeIds -> id dell'arco non orientato: (u,v) e (v,u) condividono lo stesso id,
+     *                     pari alla posizione dell'arco nel file (0..m-1)
+     * Rispetto a una lista di liste non si alloca un oggetto per ogni arco
+     * e gli archi di uno stesso nodo sono contigui in memoria.
      *
-     * PriorityQueue<PQNode> funge da min-heap ordinato per dist ⇒ poll() estrae sempre il nodo
-     * col minor costo provvisorio.
-     * Quando migliora dist[v] si inserisce una nuova voce in coda;
-     * settled[] permette di ignorare eventuali voci “vecchie” quando vengono estratte.
-     * Per ogni arco (u,v,w), se dist[u] + w < dist[v] allora aggiorna dist[v] e reinserisce v nella coda.
+     * build: costruisce il grafo con due passate sugli archi letti dal file.
+     *     - 1ª passata: conta il grado di ogni nodo e ricava gli offsets con una somma prefissa.
+     *     - 2ª passata: riempie targets/weights/edgeIds nello stesso ordine di inserimento
+     *       della vecchia lista di adiacenza, così la DFS visita i vicini nello stesso ordine.
+     * componente, numComponenti: etichette delle componenti connesse (0, 1, ... in ordine di nodo minimo),
+     *   calcolate con UnionFind durante build; per un grafo costruito in altro modo (snapshot) alla prima richiesta.
+     * pesiInteri: vero se tutti i pesi sono interi in [0, MAX_PESO_INTERO] e ogni distanza possibile
+     *   (al più (n - 1) * peso massimo) sta sotto 2^53: allora le somme in double sono esatte
+     *   e dijkstraRadix su long dà le stesse distanze della versione in double. Si ricalcola a ogni chiamata
+     *   (i pesi di DynamicApsp cambiano): la usano main per scegliere la coda e Workspace prima di creare il RadixHeap.
      */
-    static double[] dijkstra(List<List<Arco>> g, int s) {
-        int n = g.size();
-        double[] dist = new double[n];
-        Arrays.fill(dist, Double.POSITIVE_INFINITY);
-        boolean[] settled = new boolean[n];
-        PriorityQueue<PQNode> pq = new PriorityQueue<>();
+    static class Grafo {
+        final int n;
+        final int[] offsets;
+        final int[] targets;
+        final double[] weights;
+        final int[] edgeIds;
+        private int[] componente;
+        private int numComponenti;
 
-        dist[s] = 0.0;
-        pq.add(new PQNode(s, 0.0));
+        static final double MAX_PESO_INTERO = Integer.MAX_VALUE;
 
-        while (!pq.isEmpty()) {
-            PQNode minNode = pq.poll();
-            int u = minNode.i;
-            if (settled[u]) continue;
-            settled[u] = true;
+        Grafo(int n, int[] offsets, int[] targets, double[] weights, int[] edgeIds) {
+            this.n = n;
+            this.offsets = offsets;
+            this.targets = targets;
+            this.weights = weights;
+            this.edgeIds = edgeIds;
+        }
 
-            for (Arco a : g.get(u)) {
-                int v = a.to;
-                double nd = dist[u] + a.w;
-                if (nd < dist[v]) {
-                    dist[v] = nd;
-                    pq.add(new PQNode(v, nd));
-                }
+        boolean pesiInteri() {
+            double max = 0;
+            for (double w : weights) {
+                if (!pesoIntero(w)) return false;
+                max = Math.max(max, w);
             }
+            return max * Math.max(n - 1, 1) < 0x1p53;
         }
-        return dist;
-    }
 
-    // Tolleranza numerica
-    static final double Tol = 1e-7;
+        static boolean pesoIntero(double w) {
+            return w >= 0 && w <= MAX_PESO_INTERO && w == Math.rint(w);
+        }
 
-    /**
-     * Estrae fino a K cammini minimi edge-disjoint tra s e t.
-     * Ripete K volte una DFS (searchPath) che segue solo passi con distS[u]+w(u,v) uguale distS[v],
-     *   così ogni cammino trovato ha costo distS[t] (quindi è minimo).
-     * Dopo ogni cammino, “banna” i suoi archi non orientati per impedire il riuso e garantire cammini edge-disjoint.
-     * Se t è irraggiungibile (distS[t]=∞), ritorna vuoto.
-     * Ritorna 0..K cammini come liste di nodi [s,…,t].
-     *
-     * Per tenere traccia degli archi giù usati nei precedenti cammini minimi
-     * ho usato un HashSet<String> banned.
-     * Ho scelto di usare questa struttura perchè riesce a contenere
-     * la chiave di ogni arco usato in modo da non avere duplicati.
-     * La chiave è non orientata e normalizzata:
-     *      edgeKey(u, v) = (u < v) ? "u-v" : "v-u"
-     * In questo modo (u,v) e (v,u) coincidono e non si creano duplicati.
-     * Inoltre, non va ad aumentare la complessità di Dijkstra in quanto contains() o add() nel caso medio --> O(1)
-     */
-    static List<List<Integer>> findKPaths(List<List<Arco>> g, int s, int t, int K, double[] distS) {
-        List<List<Integer>> result = new ArrayList<>();
-        if (!Double.isFinite(distS[t])) return result;
+        static Grafo build(int n, List<EdgeData> edges) {
+            int m = edges.size();
+            int[] us = new int[m], vs = new int[m];
+            double[] ws = new double[m];
+            for (int i = 0; i < m; i++) {
+                EdgeData e = edges.get(i);
+                us[i] = e.u;
+                vs[i] = e.v;
+                ws[i] = e.w;
+            }
+            return build(n, us, vs, ws, m);
+        }
 
-        Set<String> banned = new HashSet<>();
-        int n = g.size();
+        // Stessa costruzione a partire da array paralleli (us[i], vs[i], ws[i]) con i primi m archi validi.
+        static Grafo build(int n, int[] us, int[] vs, double[] ws, int m) {
+            int[] offsets = new int[n + 1];
+            for (int i = 0; i < m; i++) {
+                offsets[us[i] + 1]++;
+                offsets[vs[i] + 1]++;
+            }
+            for (int i = 0; i < n; i++) {
+                offsets[i + 1] += offsets[i];
+            }
 
-        for (int k = 0; k < K; k++) {
-            List<Integer> current = new ArrayList<>();
-            boolean[] nodi = new boolean[n];
-            current.add(s);
-            nodi[s] = true;
+            int size = offsets[n];
+            int[] targets = new int[size];
+            double[] weights = new double[size];
+            int[] edgeIds = new int[size];
+            int[] next = Arrays.copyOf(offsets, n);
+            UnionFind uf = new UnionFind(n);
 
-            if (!searchPath(g, s, t, distS, banned, current, nodi)) break;
+            for (int id = 0; id < m; id++) {
+                uf.union(us[id], vs[id]);
+                int p = next[us[id]]++;
+                targets[p] = vs[id];
+                weights[p] = ws[id];
+                edgeIds[p] = id;
 
-            result.add(new ArrayList<>(current));
-            for (int i = 0; i + 1 < current.size(); i++) {
-                banned.add(edgeKey(current.get(i), current.get(i + 1)));
+                p = next[vs[id]]++;
+                targets[p] = us[id];
+                weights[p] = ws[id];
+                edgeIds[p] = id;
             }
+            Grafo g = new Grafo(n, offsets, targets, weights, edgeIds);
+            g.label(uf);
+            return g;
+        }
+
+        // Numero di archi non orientati (ogni arco compare due volte in targets)
+        int edgeCount() {
+            return targets.length / 2;
+        }
+
+        // Etichetta di componente per ogni nodo.
+        int[] componenti() {
+            if (componente == null) {
+                UnionFind uf = new UnionFind(n);
+                for (int u = 0; u < n; u++) {
+                    for (int p = offsets[u]; p < offsets[u + 1]; p++) uf.union(u, targets[p]);
+                }
+                label(uf);
+            }
+            return componente;
+        }
+
+        int numComponenti() {
+            componenti();
+            return numComponenti;
+        }
+
+        // La radice di ogni insieme è il suo nodo minimo, quindi le componenti si numerano scorrendo i nodi in ordine.
+        private void label(UnionFind uf) {
+            int[] c = new int[n];
+            int k = 0;
+            for (int v = 0; v < n; v++) {
+                int r = uf.find(v);
+                c[v] = r == v ? k++ : c[r];
+            }
+            componente = c;
+            numComponenti = k;
+        }
+
+        /**
+         * Sottografo compatto indotto dai nodi di una componente (nodi[] in ordine crescente):
+         * il nodo nodi[i] diventa i, gli archi vengono rinumerati 0..m_c-1 nell'ordine del file
+         * e le liste di adiacenza mantengono l'ordine originale, così la DFS trova gli stessi cammini.
+         * locale[] (n elementi) e idLocale[] (un elemento per arco, tutto -1) sono buffer condivisi tra le componenti;
+         * idLocale torna a -1 alla fine.
+         */
+        Grafo sottografo(int[] nodi, int[] locale, int[] idLocale) {
+            int k = nodi.length;
+            for (int i = 0; i < k; i++) locale[nodi[i]] = i;
+            int[] off = new int[k + 1];
+            for (int i = 0; i < k; i++) off[i + 1] = off[i] + offsets[nodi[i] + 1] - offsets[nodi[i]];
+
+            int size = off[k];
+            int[] tg = new int[size];
+            double[] w = new double[size];
+            int[] ids = new int[size];
+            int[] usati = new int[size / 2 + 1];
+            int mc = 0;
+            for (int i = 0; i < k; i++) {
+                int q = off[i];
+                for (int p = offsets[nodi[i]]; p < offsets[nodi[i] + 1]; p++, q++) {
+                    tg[q] = locale[targets[p]];
+                    w[q] = weights[p];
+                    ids[q] = edgeIds[p];
+                }
+            }
+            // Rinumerazione degli id nell'ordine globale: gli id si raccolgono, si ordinano e si numerano.
+            for (int q = 0; q < size; q++) {
+                int id = ids[q];
+                if (idLocale[id] == -1) {
+                    idLocale[id] = -2;
+                    usati[mc++] = id;
+                }
+            }
+            Arrays.sort(usati, 0, mc);
+            for (int i = 0; i < mc; i++) idLocale[usati[i]] = i;
+            for (int q = 0; q < size; q++) ids[q] = idLocale[ids[q]];
+            for (int i = 0; i < mc; i++) idLocale[usati[i]] = -1;
+            return new Grafo(k, off, tg, w, ids);
         }
-        return result;
     }
 
     /**
-     * Cerca un cammino minimo da s a t con una ricerca in profondità (DFS).
-     * Visita i vicini v di u scartando:
-     *   archi già usati (banned)
-     *   nodi già nel cammino per evitare cicli,
-     *   passi non “in avanti”: distS[u] + w(u,v) diverso da distS[v] per garantire che sia un cammino minimo.
-     * Se raggiunge t, ritorna true lasciando in 'current' il cammino trovato.
+     * UnionFind: insiemi disgiunti per le componenti connesse, riempito da Grafo.build mentre legge gli archi.
+     * find con dimezzamento del cammino; union attacca la radice maggiore a quella minore,
+     * così la radice di ogni insieme è il suo nodo più piccolo.
      */
-    static boolean searchPath(List<List<Arco>> g, int u, int t, double[] distS, Set<String> banned, List<Integer> current, boolean[] on) {
-        if (u == t) return true;
-
-        for (Arco a : g.get(u)) {
-            int v = a.to;
+    static class UnionFind {
+        final int[] parent;
 
-            if (banned.contains(edgeKey(u, v))) continue;
-            if (on[v]) continue;
-            if (Math.abs(distS[u] + a.w - distS[v]) > Tol) continue;
+        UnionFind(int n) {
+            parent = new int[n];
+            for (int i = 0; i < n; i++) parent[i] = i;
+        }
 
-            on[v] = true;
-            current.add(v);
-            if (searchPath(g, v, t, distS, banned, current, on)) return true;
-            current.removeLast();
-            on[v] = false;
+        int find(int x) {
+            while (parent[x] != x) {
+                parent[x] = parent[parent[x]];
+                x = parent[x];
+            }
+            return x;
         }
-        return false;
-    }
 
-    // Converte la lista di nodi in stringa leggibile. Nodi formattati come “N0 -> N5 -> N12”
-    static String formatPath(List<Integer> path) {
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < path.size(); i++) {
-            if (i > 0) sb.append(" -> ");
-            sb.append("N").append(path.get(i));
+        void union(int a, int b) {
+            a = find(a);
+            b = find(b);
+            if (a < b) parent[b] = a;
+            else if (b < a) parent[a] = b;
         }
-        return sb.toString();
     }
 
     /**
-     * Legge il file passato da terminale con un while distinguendo le prime 2 righe dal resto del file:
-     *     1ª riga: n -> numero nodi e inizializzazione lista di adiacenza g (n liste vuote).
-     *     2ª riga: m -> numero archi.
-     *     Righe successive: per le prime m righe valide fa il parse dell’arco (u, v, w) e inserimento doppio.
-     * Costruisce un grafe non orientato inserendo per ogni riga gli archi u, v con peso w.
-     * Avvia timer globale
-     * Lancia Dijkstra per ogni sorgente s, salvando dist[s] (distanze minime da s a tutti i nodi).
-     * Se dist[s][t] è +infinito stampa che non c'è connessione tra i 2 nodi,
-     * Se c'è una connessione calcola il costo e stampa i cammini trovati, (stampa anche la coppia inversa invertendo i cammini)
+     * EdgeListParser: lettura del file di input con FileChannel.map, scandendo direttamente i byte
+     * senza creare una String per riga né usare split/replace/espressioni regolari.
+     *     - Le righe sono separate da '\n' o '\r'; le righe vuote (solo spazi) vengono ignorate come con lo Scanner.
+     *     - 1ª e 2ª riga non vuota: n e m (primo intero prima di un eventuale '#').
+     *     - Righe successive: token separati da spazi e parentesi; "N<int>" sono i due nodi,
+     *       il primo token numerico è il peso; il '#' apre un commento fino a fine riga.
+     *       Gli archi finiscono direttamente negli array us/vs/ws, poi passati a Grafo.build.
+     * Numeri semplici (cifre, punto, esponente) sono convertiti a mano: per il peso si usa il caso esatto
+     * mantissa < 2^53 e |esponente| <= 22, in cui mantissa * 10^e o mantissa / 10^-e è già arrotondato
+     * correttamente, quindi il risultato è identico a Double.parseDouble.
+     * Ogni riga che esce da questi casi (suffissi, "Infinity", caratteri non ASCII, errori...) viene passata
+     * a parseFirstInt/parseEdgeLine, così comportamento e messaggi d'errore restano quelli del parser con Scanner.
      *
-     * Ferma il timer globale e stampa il tempo totale in secondi.
-     * Gestisce eventuali eccezioni stampando un messaggio d’errore.
+     * Il file viene mappato a regioni di al più 1 GB; una riga a cavallo di due regioni
+     * viene letta all'inizio della regione successiva.
+     * Con più thread, dopo le prime due righe il corpo del file viene diviso in blocchi che iniziano
+     * subito dopo un '\n': ogni blocco viene letto da un task diverso nei propri array,
+     * poi i blocchi sono concatenati nell'ordine del file e si tengono i primi m archi.
+     * Un errore in un blocco conta solo se cade entro i primi m archi, come nella lettura sequenziale
+     * che si ferma dopo m archi.
      */
-    public static void main(String[] args) {
-        if (args.length < 1) {
-            System.err.println("Inserire nel terminale: java -cp . Esercizio3 <file_input>");
-            System.exit(1);
-        }
-        String inputFile = args[0];
+    static class EdgeListParser {
+        static final long REGION = 1L << 30;
+        private static final double[] POW10 = {
+                1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+                1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+        };
 
-        try (Scanner sc = new Scanner(new File(inputFile))) {
-            sc.useLocale(Locale.US);
+        final boolean header;
+        int lineCount = 0;
+        int n = -1, m = -1;
+        long bodyStart = -1;
 
-            List<List<Arco>> g = null;
-            int n = -1, m = -1;
-            int readEdges = 0;
-            int lineCount = 0;
+        int[] us = new int[16], vs = new int[16];
+        double[] ws = new double[16];
+        int count = 0;
+        RuntimeException error = null;
 
-            while (sc.hasNextLine()) {
-                String line = sc.nextLine().trim();
-                if (line.isEmpty()) continue;
+        private EdgeListParser(boolean header) {
+            this.header = header;
+        }
 
-                lineCount++;
+        /**
+         * Legge il file e costruisce il grafo; ritorna null se n <= 0.
+         * Con threads > 1 e un file abbastanza grande il corpo viene letto in parallelo.
+         */
+        static Grafo load(String file, int threads) throws Exception {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+                 java.nio.channels.FileChannel ch = raf.getChannel()) {
+                long size = ch.size();
 
-                if (lineCount == 1) {
-                    n = parseFirstInt(line);
-                    g = new ArrayList<>(n);
-                    for (int i = 0; i < n; i++)
-                        g.add(new ArrayList<>());
-                } else if (lineCount == 2) {
-                    m = parseFirstInt(line);
+                EdgeListParser p = new EdgeListParser(true);
+                if (threads <= 1 || size < (1L << 20)) {
+                    p.scan(ch, 0, size, true);
                 } else {
-                    if (readEdges < m) {
-                        EdgeData e = parseEdgeLine(line);
-                        if (e.w < 0) {
-                            System.err.printf(Locale.US, "Errore: peso negativo non ammesso sull'arco N%d-N%d: %.2f%n", e.u, e.v, e.w);
+                    p.scan(ch, 0, size, false);
+                    if (p.bodyStart >= 0) p.parallelBody(ch, p.bodyStart, size, threads);
+                }
+                return p.finish();
+            }
+        }
+
+        // Controlli finali, nello stesso ordine della lettura con Scanner.
+        private Grafo finish() {
+            int k = Math.min(count, Math.max(m, 0));
+            for (int i = 0; i < k; i++) {
+                if (ws[i] < 0) {
+                    System.err.printf(Locale.US, "Errore: peso negativo non ammesso sull'arco N%d-N%d: %.2f%n", us[i], vs[i], ws[i]);
+                }
+                if (us[i] >= n || vs[i] >= n)
+                    throw new IllegalArgumentException("Nodo fuori intervallo nell'arco N" + us[i] + "-N" + vs[i]);
+            }
+            if (error != null && count < m) throw error;
+            if (n <= 0) return null;
+            return Grafo.build(n, us, vs, ws, k);
+        }
+
+        /**
+         * Scandisce [from, to) regione per regione.
+         * Se edges è false ci si ferma subito dopo la 2ª riga non vuota (bodyStart = offset successivo).
+         */
+        private void scan(java.nio.channels.FileChannel ch, long from, long to, boolean edges) throws IOException {
+            long pos = from;
+            while (pos < to && !done()) {
+                long len = Math.min(REGION, to - pos);
+                boolean last = pos + len >= to;
+                java.nio.MappedByteBuffer b = ch.map(java.nio.channels.FileChannel.MapMode.READ_ONLY, pos, len);
+                int start = 0;
+                int i = 0;
+                int end = (int) len;
+                while (i < end) {
+                    byte c = b.get(i);
+                    if (c == '\n' || c == '\r') {
+                        line(b, start, i);
+                        start = i + 1;
+                        if (!edges && lineCount == 2 && header && bodyStart < 0) {
+                            bodyStart = pos + start;
+                            return;
                         }
-                        g.get(e.u).add(new Arco(e.v, e.w));
-                        g.get(e.v).add(new Arco(e.u, e.w));
-                        readEdges++;
+                        if (done()) return;
                     }
+                    i++;
+                }
+                if (last) {
+                    line(b, start, end);
+                    if (!edges && lineCount == 2 && header && bodyStart < 0) bodyStart = to;
+                    return;
                 }
+                if (start == 0) throw new IllegalArgumentException("Riga troppo lunga nel file di input");
+                pos += start;
             }
+        }
 
-            if (g == null || n <= 0) {
-                System.err.println("Input non valido o grafo vuoto.");
-                return;
+        private boolean done() {
+            return error != null || (header && lineCount >= 2 && count >= m);
+        }
+
+        private void parallelBody(java.nio.channels.FileChannel ch, long from, long to, int threads) throws Exception {
+            long[] cuts = new long[threads + 1];
+            cuts[0] = from;
+            cuts[threads] = to;
+            java.nio.ByteBuffer one = java.nio.ByteBuffer.allocate(1);
+            for (int k = 1; k < threads; k++) {
+                long c = Math.max(cuts[k - 1], from + (to - from) * k / threads);
+                while (c < to) {
+                    one.clear();
+                    ch.read(one, c - 1);
+                    if (one.get(0) == '\n') break;
+                    c++;
+                }
+                cuts[k] = c;
             }
 
-            long globalStart = System.nanoTime();
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<EdgeListParser>> parti = new ArrayList<>();
+                for (int k = 0; k < threads; k++) {
+                    long a = cuts[k], z = cuts[k + 1];
+                    parti.add(pool.submit(() -> {
+                        EdgeListParser part = new EdgeListParser(false);
+                        if (a < z) part.scan(ch, a, z, true);
+                        return part;
+                    }));
+                }
+                for (Future<EdgeListParser> f : parti) {
+                    EdgeListParser part = f.get();
+                    if (count < m) {
+                        int take = part.count;
+                        grow(count + take);
+                        System.arraycopy(part.us, 0, us, count, take);
+                        System.arraycopy(part.vs, 0, vs, count, take);
+                        System.arraycopy(part.ws, 0, ws, count, take);
+                        count += take;
+                        if (part.error != null) {
+                            error = part.error;
+                            break;
+                        }
+                    }
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+
+        private void grow(int capacity) {
+            if (capacity <= us.length) return;
+            int c = Math.max(capacity, us.length * 2);
+            us = Arrays.copyOf(us, c);
+            vs = Arrays.copyOf(vs, c);
+            ws = Arrays.copyOf(ws, c);
+        }
+
+        private void line(java.nio.ByteBuffer b, int start, int end) {
+            while (start < end && (b.get(start) & 0xff) <= ' ') start++;
+            while (end > start && (b.get(end - 1) & 0xff) <= ' ') end--;
+            if (start == end) return;
 
-            double[][] dist = new double[n][];
-            for (int s = 0; s < n; s++) {
-                dist[s] = dijkstra(g, s);
+            if (header && lineCount < 2) {
+                lineCount++;
+                int v = firstInt(b, start, end);
+                if (lineCount == 1) {
+                    n = v;
+                } else {
+                    m = v;
+                    if (m > 0) grow(Math.min(m, 1 << 20));
+                }
+                return;
+            }
+            if (error != null) return;
+            try {
+                if (!fastEdge(b, start, end)) {
+                    EdgeData e = parseEdgeLine(text(b, start, end));
+                    add(e.u, e.v, e.w);
+                }
+            } catch (RuntimeException e) {
+                error = e;
             }
+        }
 
-            for (int s = 0; s < n; s++) {
-                for (int t = s + 1; t < n; t++) {
-                    double D = dist[s][t];
-                    if (!Double.isFinite(D)) {
-                        System.out.println();
-                        System.out.println("Coppia: N" + s + " -> N" + t + "  (disconnessi)");
-                        System.out.println("Coppia: N" + t + " -> N" + s + "  (disconnessi)");
-                        continue;
-                    }
+        private void add(int u, int v, double w) {
+            if (count == us.length) grow(count + 1);
+            us[count] = u;
+            vs[count] = v;
+            ws[count] = w;
+            count++;
+        }
 
-                    List<List<Integer>> paths = findKPaths(g, s, t, 3, dist[s]);
+        private static String text(java.nio.ByteBuffer b, int start, int end) {
+            byte[] tmp = new byte[end - start];
+            b.get(start, tmp);
+            return new String(tmp, java.nio.charset.StandardCharsets.UTF_8);
+        }
 
-                    System.out.println("\nCoppia: N" + s + " -> N" + t + "  (costo minimo = " + String.format(Locale.US, "%.2f", D) + ")");
-                    for (int k = 0; k < paths.size(); k++) {
-                        System.out.println("  Cammino " + (k + 1) + ":  " + formatPath(paths.get(k)));
-                    }
+        private static boolean isSpace(int c) {
+            return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+        }
 
-                    System.out.println("Coppia: N" + t + " -> N" + s + "  (costo minimo = " + String.format(Locale.US, "%.2f", D) + ")");
-                    for (int k = 0; k < paths.size(); k++) {
-                        List<Integer> p = paths.get(k);
-                        StringBuilder sb = new StringBuilder();
-                        for (int i = p.size() - 1; i >= 0; i--) {
-                            if (i < p.size() - 1) sb.append(" -> ");
-                            sb.append("N").append(p.get(i));
-                        }
-                        System.out.println("  Cammino " + (k + 1) + ":  " + sb);
+        // Primo intero della riga; nei casi non banali si delega a parseFirstInt.
+        private static int firstInt(java.nio.ByteBuffer b, int start, int end) {
+            int i = start;
+            boolean neg = false;
+            if (b.get(i) == '-' || b.get(i) == '+') neg = b.get(i++) == '-';
+            long v = 0;
+            int digits = 0;
+            while (i < end && b.get(i) >= '0' && b.get(i) <= '9' && digits < 10) {
+                v = v * 10 + (b.get(i++) - '0');
+                digits++;
+            }
+            if (digits == 0 || v > Integer.MAX_VALUE || (i < end && !isSpace(b.get(i)) && b.get(i) != '#')) {
+                return parseFirstInt(text(b, start, end));
+            }
+            return (int) (neg ? -v : v);
+        }
+
+        // Riconosce "( Nu Nv ) w" senza allocazioni; ritorna false se la riga va letta con parseEdgeLine.
+        private boolean fastEdge(java.nio.ByteBuffer b, int start, int end) {
+            int u = -1, v = -1;
+            boolean hasWeight = false;
+            double w = 0;
+            int i = start;
+            while (i < end) {
+                int c = b.get(i);
+                if (c == '#') break;
+                if (isSpace(c) || c == '(' || c == ')') {
+                    i++;
+                    continue;
+                }
+                int tok = i;
+                while (i < end) {
+                    c = b.get(i);
+                    if (isSpace(c) || c == '(' || c == ')' || c == '#') break;
+                    if (c < ' ' || c >= 127) return false;
+                    i++;
+                }
+                if (b.get(tok) == 'N') {
+                    long id = 0;
+                    if (i - tok < 2 || i - tok > 10) return false;
+                    for (int k = tok + 1; k < i; k++) {
+                        int d = b.get(k) - '0';
+                        if (d < 0 || d > 9) return false;
+                        id = id * 10 + d;
                     }
+                    if (id > Integer.MAX_VALUE) return false;
+                    if (u == -1) u = (int) id;
+                    else v = (int) id;
+                } else if (!hasWeight) {
+                    w = number(b, tok, i);
+                    if (Double.isNaN(w)) return false;
+                    hasWeight = true;
                 }
+                if (u != -1 && v != -1 && hasWeight) break;
             }
+            if (u < 0 || v < 0 || !hasWeight) return false;
+            add(u, v, w);
+            return true;
+        }
 
-            long globalEnd = System.nanoTime();
-            System.out.println(String.format(Locale.US, "\nTempo totale: %.6f s", (globalEnd - globalStart) / 1e9));
+        // [segno] cifre [. cifre] [e [segno] cifre]; NaN se il token non rientra nel caso esatto.
+        private static double number(java.nio.ByteBuffer b, int i, int end) {
+            boolean neg = false;
+            if (b.get(i) == '-' || b.get(i) == '+') neg = b.get(i++) == '-';
+            long mant = 0;
+            int digits = 0, scale = 0;
+            boolean any = false;
+            while (i < end && b.get(i) >= '0' && b.get(i) <= '9') {
+                if (digits >= 18) return Double.NaN;
+                mant = mant * 10 + (b.get(i++) - '0');
+                if (mant > 0) digits++;
+                any = true;
+            }
+            if (i < end && b.get(i) == '.') {
+                i++;
+                while (i < end && b.get(i) >= '0' && b.get(i) <= '9') {
+                    if (digits >= 18) return Double.NaN;
+                    mant = mant * 10 + (b.get(i++) - '0');
+                    if (mant > 0) digits++;
+                    scale--;
+                    any = true;
+                }
+            }
+            if (!any) return Double.NaN;
+            if (i < end && (b.get(i) == 'e' || b.get(i) == 'E')) {
+                i++;
+                boolean eneg = false;
+                if (i < end && (b.get(i) == '-' || b.get(i) == '+')) eneg = b.get(i++) == '-';
+                int exp = 0, edigits = 0;
+                while (i < end && b.get(i) >= '0' && b.get(i) <= '9' && edigits < 4) {
+                    exp = exp * 10 + (b.get(i++) - '0');
+                    edigits++;
+                }
+                if (edigits == 0) return Double.NaN;
+                scale += eneg ? -exp : exp;
+            }
+            if (i != end || mant >= (1L << 53)) return Double.NaN;
+            double r;
+            if (mant == 0) r = 0.0;
+            else if (scale >= 0 && scale <= 22) r = mant * POW10[scale];
+            else if (scale < 0 && scale >= -22) r = mant / POW10[-scale];
+            else return Double.NaN;
+            return neg ? -r : r;
+        }
+    }
+
+    /**
+     * Snapshot: formato binario del grafo già costruito, per evitare di rileggere il file di testo.
+     * Tutti i valori sono little-endian (l'ordine nativo delle macchine x86/ARM, così la copia è un memcpy).
+     *     intestazione (32 byte): "E3GS", int versione, int n, int m (archi), int size (archi orientati = 2m),
+     *                             int riservato, long CRC32 del contenuto che segue
+     *     contenuto: offsets (n+1 int), targets (size int), edgeIds (size int), weights (size double)
+     * save: scrive il contenuto a blocchi da 1 MB calcolando il CRC, poi l'intestazione in testa al file.
+     * load: controlla intestazione e lunghezza del file, mappa il contenuto con FileChannel.map a regioni
+     *   di al più 1 GB e lo copia con una get() in blocco negli array del Grafo, verificando il CRC sulle stesse regioni.
+     *   Un file troncato, di un'altra versione, con CRC diverso o con un CSR incoerente (vedi valida)
+     *   viene rifiutato con IllegalArgumentException.
+     */
+    static class Snapshot {
+        static final int VERSIONE = 1;
+        static final int HEADER = 32;
+        private static final byte[] MAGIC = {'E', '3', 'G', 'S'};
+        private static final long REGION = 1L << 30;
+
+        static void save(Grafo g, String file) throws IOException {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                 java.nio.channels.FileChannel ch = raf.getChannel()) {
+                ch.truncate(0);
+                java.util.zip.CRC32 crc = new java.util.zip.CRC32();
+                java.nio.ByteBuffer b = java.nio.ByteBuffer.allocateDirect(1 << 20).order(java.nio.ByteOrder.LITTLE_ENDIAN);
+                ch.position(HEADER);
+                for (int x : g.offsets) b = put(ch, crc, b, 4).putInt(x);
+                for (int x : g.targets) b = put(ch, crc, b, 4).putInt(x);
+                for (int x : g.edgeIds) b = put(ch, crc, b, 4).putInt(x);
+                for (double x : g.weights) b = put(ch, crc, b, 8).putDouble(x);
+                drain(ch, crc, b);
+
+                java.nio.ByteBuffer h = java.nio.ByteBuffer.allocate(HEADER).order(java.nio.ByteOrder.LITTLE_ENDIAN);
+                h.put(MAGIC).putInt(VERSIONE).putInt(g.n).putInt(g.edgeCount()).putInt(g.targets.length).putInt(0).putLong(crc.getValue());
+                h.flip();
+                while (h.hasRemaining()) ch.write(h, h.position());
+            }
+        }
+
+        // Se nel buffer non ci sono k byte liberi lo scrive sul canale (aggiornando il CRC) e lo svuota.
+        private static java.nio.ByteBuffer put(java.nio.channels.FileChannel ch, java.util.zip.CRC32 crc, java.nio.ByteBuffer b, int k) throws IOException {
+            if (b.remaining() < k) drain(ch, crc, b);
+            return b;
+        }
+
+        private static void drain(java.nio.channels.FileChannel ch, java.util.zip.CRC32 crc, java.nio.ByteBuffer b) throws IOException {
+            b.flip();
+            crc.update(b.duplicate());
+            while (b.hasRemaining()) ch.write(b);
+            b.clear();
+        }
+
+        static Grafo load(String file) throws IOException {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+                 java.nio.channels.FileChannel ch = raf.getChannel()) {
+                if (ch.size() < HEADER) throw new IllegalArgumentException("Snapshot troncato: " + file);
+                java.nio.ByteBuffer h = ch.map(java.nio.channels.FileChannel.MapMode.READ_ONLY, 0, HEADER).order(java.nio.ByteOrder.LITTLE_ENDIAN);
+                byte[] magic = new byte[4];
+                h.get(magic);
+                if (!Arrays.equals(magic, MAGIC)) throw new IllegalArgumentException("Il file non è uno snapshot del grafo: " + file);
+                int versione = h.getInt();
+                if (versione != VERSIONE) throw new IllegalArgumentException("Versione dello snapshot non supportata: " + versione);
+                int n = h.getInt();
+                int m = h.getInt();
+                int size = h.getInt();
+                h.getInt();
+                long atteso = h.getLong();
+                if (n < 0 || m < 0 || size != 2L * m
+                        || ch.size() != HEADER + 4L * (n + 1) + 8L * size + 8L * size)
+                    throw new IllegalArgumentException("Snapshot troncato o incoerente: " + file);
+
+                java.util.zip.CRC32 crc = new java.util.zip.CRC32();
+                long pos = HEADER;
+                int[] offsets = new int[n + 1];
+                pos = readInts(ch, crc, pos, offsets);
+                int[] targets = new int[size];
+                pos = readInts(ch, crc, pos, targets);
+                int[] edgeIds = new int[size];
+                pos = readInts(ch, crc, pos, edgeIds);
+                double[] weights = new double[size];
+                int done = 0;
+                while (done < size) {
+                    int k = (int) Math.min(size - done, REGION / 8);
+                    java.nio.MappedByteBuffer b = ch.map(java.nio.channels.FileChannel.MapMode.READ_ONLY, pos, 8L * k);
+                    crc.update(b.duplicate());
+                    b.order(java.nio.ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(weights, done, k);
+                    done += k;
+                    pos += 8L * k;
+                }
+                if (crc.getValue() != atteso) throw new IllegalArgumentException("Checksum dello snapshot non valido: " + file);
+                valida(file, n, m, offsets, targets, edgeIds, weights);
+                return new Grafo(n, offsets, targets, weights, edgeIds);
+            }
+        }
+
+        /**
+         * Il CRC dice solo che il file non si è rovinato: uno snapshot scritto da un'altra versione del programma
+         * (o costruito a mano) può avere un CSR sbagliato che farebbe fallire Dijkstra molto più avanti.
+         * Qui si controlla che offsets parta da 0, non decresca e finisca in size, che ogni target sia in [0, n)
+         * e che ogni id d'arco in [0, m) compaia esattamente due volte (le due direzioni dell'arco).
+         * Poi si ristampano gli avvisi sui pesi negativi della lettura del testo, una volta per arco.
+         */
+        private static void valida(String file, int n, int m, int[] offsets, int[] targets, int[] edgeIds, double[] weights) {
+            if (offsets[0] != 0 || offsets[n] != targets.length)
+                throw new IllegalArgumentException("Snapshot incoerente (offsets non va da 0 a " + targets.length + "): " + file);
+            for (int u = 0; u < n; u++) {
+                if (offsets[u + 1] < offsets[u])
+                    throw new IllegalArgumentException("Snapshot incoerente (offsets decrescente nel nodo " + u + "): " + file);
+            }
+            byte[] visto = new byte[m];
+            for (int u = 0; u < n; u++) {
+                for (int p = offsets[u]; p < offsets[u + 1]; p++) {
+                    int v = targets[p], id = edgeIds[p];
+                    if (v < 0 || v >= n)
+                        throw new IllegalArgumentException("Snapshot incoerente (nodo " + v + " fuori intervallo): " + file);
+                    if (id < 0 || id >= m || visto[id] == 2)
+                        throw new IllegalArgumentException("Snapshot incoerente (id d'arco " + id + " non valido): " + file);
+                    if (visto[id]++ == 0 && weights[p] < 0)
+                        System.err.printf(Locale.US, "Errore: peso negativo non ammesso sull'arco N%d-N%d: %.2f%n", u, v, weights[p]);
+                }
+            }
+        }
+
+        private static long readInts(java.nio.channels.FileChannel ch, java.util.zip.CRC32 crc, long pos, int[] dst) throws IOException {
+            int done = 0;
+            while (done < dst.length) {
+                int k = (int) Math.min(dst.length - done, REGION / 4);
+                java.nio.MappedByteBuffer b = ch.map(java.nio.channels.FileChannel.MapMode.READ_ONLY, pos, 4L * k);
+                crc.update(b.duplicate());
+                b.order(java.nio.ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(dst, done, k);
+                done += k;
+                pos += 4L * k;
+            }
+            return pos;
+        }
+    }
+
+    /**
+     * MatriceDistanze: matrice dist[s][t] di tutte le coppie in un file mappato in memoria (--matrice f),
+     * fuori dall'heap della JVM e persistente tra un'esecuzione e l'altra. Valori little-endian come nello Snapshot:
+     *     intestazione (64 byte): "E3DM", int versione, int n, int byte per valore (4 = float32, 8 = float64),
+     *                             long impronta del grafo, long righe completate, 32 byte riservati
+     *     bitmap: un bit per sorgente (riga completa), arrotondata a multipli di 8 byte
+     *     dati: n righe di n valori, in ordine di riga (riga s = distanze da s); +infinito se disconnessi
+     * Ogni riga viene scritta appena la sua Dijkstra finisce e solo dopo si accende il suo bit, quindi un'esecuzione
+     * interrotta lascia nel file tutte le righe marcate e la successiva (apri sullo stesso file) riprende
+     * calcolando solo quelle mancanti. L'impronta (hash di n, archi e pesi) impedisce di riprendere con un altro grafo.
+     * I dati sono mappati a regioni di al più 1 GB allineate alle righe; più worker scrivono righe diverse
+     * in parallelo, mentre bitmap e contatore si aggiornano sotto lock.
+     * distanza(s, t) legge un valore ad accesso diretto, anche da un altro processo che apre il file con leggi.
+     */
+    static class MatriceDistanze implements Closeable {
+        static final int VERSIONE = 1;
+        static final int HEADER = 64;
+        private static final byte[] MAGIC = {'E', '3', 'D', 'M'};
+        private static final long REGION = 1L << 30;
+
+        final int n;
+        final int precisione;
+        final long impronta;
+        private final RandomAccessFile raf;
+        private final java.nio.channels.FileChannel ch;
+        private final java.nio.MappedByteBuffer testa;
+        private final java.nio.MappedByteBuffer[] regioni;
+        private final int righePerRegione;
+        private final boolean scrittura;
+        private long completate;
+
+        private MatriceDistanze(RandomAccessFile raf, int n, int precisione, long impronta, boolean scrittura) throws IOException {
+            this.raf = raf;
+            this.ch = raf.getChannel();
+            this.n = n;
+            this.precisione = precisione;
+            this.impronta = impronta;
+            this.scrittura = scrittura;
+            java.nio.channels.FileChannel.MapMode modo = scrittura
+                    ? java.nio.channels.FileChannel.MapMode.READ_WRITE : java.nio.channels.FileChannel.MapMode.READ_ONLY;
+            long inizio = inizioDati(n);
+            this.testa = ch.map(modo, 0, inizio);
+            testa.order(java.nio.ByteOrder.LITTLE_ENDIAN);
+            long riga = (long) n * precisione;
+            this.righePerRegione = (int) Math.max(1, Math.min(n, REGION / Math.max(riga, 1)));
+            int k = n == 0 ? 0 : (n + righePerRegione - 1) / righePerRegione;
+            this.regioni = new java.nio.MappedByteBuffer[k];
+            for (int i = 0; i < k; i++) {
+                int righe = Math.min(righePerRegione, n - i * righePerRegione);
+                regioni[i] = ch.map(modo, inizio + (long) i * righePerRegione * riga, righe * riga);
+                regioni[i].order(java.nio.ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+
+        private static long inizioDati(int n) {
+            return HEADER + (((n + 7L) / 8 + 7) & ~7L);
+        }
+
+        private static long lunghezza(int n, int precisione) {
+            return inizioDati(n) + (long) n * n * precisione;
+        }
+
+        /**
+         * Apre in scrittura la matrice del grafo g: se il file non esiste (o è vuoto) lo crea con tutte le righe
+         * da calcolare, altrimenti controlla che sia la matrice dello stesso grafo e con la stessa precisione.
+         */
+        static MatriceDistanze apri(String file, Grafo g, int precisione) throws IOException {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                long impronta = impronta(g);
+                if (raf.length() == 0) {
+                    raf.setLength(lunghezza(g.n, precisione));
+                    MatriceDistanze m = new MatriceDistanze(raf, g.n, precisione, impronta, true);
+                    m.testa.put(0, MAGIC).putInt(4, VERSIONE).putInt(8, g.n).putInt(12, precisione)
+                            .putLong(16, impronta).putLong(24, 0);
+                    return m;
+                }
+                MatriceDistanze m = verifica(raf, file, true);
+                if (m.n != g.n || m.impronta != impronta) {
+                    m.close();
+                    throw new IllegalArgumentException("La matrice " + file + " è stata calcolata su un altro grafo");
+                }
+                if (m.precisione != precisione) {
+                    m.close();
+                    throw new IllegalArgumentException("La matrice " + file + " ha valori a " + 8 * m.precisione + " bit, non a " + 8 * precisione);
+                }
+                return m;
+            } catch (IOException | RuntimeException e) {
+                raf.close();
+                throw e;
+            }
+        }
+
+        // Apre in sola lettura una matrice già esistente (anche mentre un altro processo la sta riempiendo).
+        static MatriceDistanze leggi(String file) throws IOException {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                return verifica(raf, file, false);
+            } catch (IOException | RuntimeException e) {
+                raf.close();
+                throw e;
+            }
+        }
+
+        private static MatriceDistanze verifica(RandomAccessFile raf, String file, boolean scrittura) throws IOException {
+            if (raf.length() < HEADER) throw new IllegalArgumentException("Matrice troncata: " + file);
+            java.nio.ByteBuffer h = raf.getChannel().map(java.nio.channels.FileChannel.MapMode.READ_ONLY, 0, HEADER)
+                    .order(java.nio.ByteOrder.LITTLE_ENDIAN);
+            byte[] magic = new byte[4];
+            h.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) throw new IllegalArgumentException("Il file non è una matrice delle distanze: " + file);
+            int versione = h.getInt();
+            if (versione != VERSIONE) throw new IllegalArgumentException("Versione della matrice non supportata: " + versione);
+            int n = h.getInt();
+            int precisione = h.getInt();
+            long impronta = h.getLong();
+            if (n < 0 || (precisione != 4 && precisione != 8) || raf.length() != lunghezza(n, precisione))
+                throw new IllegalArgumentException("Matrice troncata o incoerente: " + file);
+            MatriceDistanze m = new MatriceDistanze(raf, n, precisione, impronta, scrittura);
+            m.completate = m.testa.getLong(24);
+            return m;
+        }
+
+        // Hash di n, estremi e pesi di tutti gli archi nell'ordine del CSR.
+        static long impronta(Grafo g) {
+            long h = 1125899906842597L ^ g.n;
+            for (int p = 0; p < g.targets.length; p++) {
+                h = 31 * h + g.targets[p];
+                h = 31 * h + g.edgeIds[p];
+                h = 31 * h + Double.doubleToLongBits(g.weights[p]);
+            }
+            for (int x : g.offsets) h = 31 * h + x;
+            return h;
+        }
+
+        synchronized boolean completa(int s) {
+            return (testa.get(HEADER + (s >>> 3)) & (1 << (s & 7))) != 0;
+        }
+
+        synchronized long completate() {
+            return completate;
+        }
+
+        // Scrive la riga di s e poi la marca come completa.
+        void scriviRiga(int s, double[] riga) {
+            java.nio.ByteBuffer b = regioni[s / righePerRegione].duplicate().order(java.nio.ByteOrder.LITTLE_ENDIAN);
+            b.position((int) ((long) (s % righePerRegione) * n * precisione));
+            if (precisione == 8) {
+                b.asDoubleBuffer().put(riga, 0, n);
+            } else {
+                java.nio.FloatBuffer f = b.asFloatBuffer();
+                for (int t = 0; t < n; t++) f.put((float) riga[t]);
+            }
+            synchronized (this) {
+                int i = HEADER + (s >>> 3);
+                byte v = testa.get(i);
+                if ((v & (1 << (s & 7))) != 0) return;
+                testa.put(i, (byte) (v | (1 << (s & 7))));
+                testa.putLong(24, ++completate);
+            }
+        }
+
+        // Distanza da s a t; NaN se né la riga di s né quella di t (il grafo è non orientato) sono complete.
+        double distanza(int s, int t) {
+            if (!completa(s)) {
+                if (!completa(t)) return Double.NaN;
+                int x = s;
+                s = t;
+                t = x;
+            }
+            java.nio.ByteBuffer b = regioni[s / righePerRegione];
+            int pos = (int) (((long) (s % righePerRegione) * n + t) * precisione);
+            return precisione == 8 ? b.getDouble(pos) : b.getFloat(pos);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (scrittura) {
+                for (java.nio.MappedByteBuffer r : regioni) r.force();
+                testa.force();
+            }
+            ch.close();
+            raf.close();
+        }
+    }
+
+    /**
+     * Modalità matrice (--matrice f): calcola solo le righe di distanza che mancano nel file f
+     * (tutte la prima volta) e le scrive in MatriceDistanze, senza estrarre né stampare i cammini.
+     * Con --thread T le sorgenti mancanti sono divise tra T worker, ognuno con il proprio Workspace.
+     * Alla fine stampa quante righe c'erano già e quante sono state calcolate.
+     */
+    static void runMatrix(Grafo g, String file, int precisione, int threads, Motore motore) throws Exception {
+        try (MatriceDistanze mat = MatriceDistanze.apri(file, g, precisione)) {
+            long presenti = mat.completate();
+            long calcolate = 0;
+            if (threads > 1) {
+                ExecutorService pool = Executors.newFixedThreadPool(threads);
+                ThreadLocal<Workspace> workspaces = ThreadLocal.withInitial(() -> new Workspace(g, motore));
+                try {
+                    List<Future<?>> righe = new ArrayList<>();
+                    for (int s = 0; s < g.n; s++) {
+                        if (mat.completa(s)) continue;
+                        final int src = s;
+                        righe.add(pool.submit(() -> {
+                            Workspace ws = workspaces.get();
+                            dijkstra(g, src, ws.dist, ws);
+                            mat.scriviRiga(src, ws.dist);
+                            motore.raccogli(ws);
+                        }));
+                    }
+                    for (Future<?> f : righe) {
+                        try {
+                            f.get();
+                        } catch (ExecutionException e) {
+                            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                        }
+                    }
+                    calcolate = righe.size();
+                } finally {
+                    pool.shutdownNow();
+                }
+            } else {
+                Workspace ws = new Workspace(g, motore);
+                for (int s = 0; s < g.n; s++) {
+                    if (mat.completa(s)) continue;
+                    dijkstra(g, s, ws.dist, ws);
+                    mat.scriviRiga(s, ws.dist);
+                    calcolate++;
+                }
+                motore.raccogli(ws);
+            }
+            System.out.println("Matrice " + file + " (" + g.n + " x " + g.n + ", float" + 8 * precisione + "): "
+                    + presenti + " righe già presenti, " + calcolate + " calcolate.");
+        }
+    }
+
+    // Legge dalla matrice f la distanza tra s e t (--matrice f --distanza s t), senza caricare il grafo.
+    static void lookupMatrix(String file, String da, String a) throws IOException {
+        try (MatriceDistanze mat = MatriceDistanze.leggi(file)) {
+            int s = Integer.parseInt(da.startsWith("N") ? da.substring(1) : da);
+            int t = Integer.parseInt(a.startsWith("N") ? a.substring(1) : a);
+            if (s < 0 || t < 0 || s >= mat.n || t >= mat.n) throw new IllegalArgumentException("Nodo fuori intervallo: N" + s + " -> N" + t);
+            double d = mat.distanza(s, t);
+            if (Double.isNaN(d)) {
+                System.out.println("Coppia: N" + s + " -> N" + t + "  (righe non ancora calcolate)");
+            } else if (!Double.isFinite(d)) {
+                System.out.println("Coppia: N" + s + " -> N" + t + "  (disconnessi)");
+            } else {
+                System.out.println(String.format(Locale.US, "Coppia: N%d -> N%d  (costo minimo = %.2f)", s, t, d));
+            }
+        }
+    }
+
+    /**
+     * ALGORITMO DI DIJKSTRA
+     * Calcola le distanze minime da una sorgente s a tutti i nodi del grafo g.
+     * Restituisce un array dist[] tale che dist[v] è il costo minimo da s a v,
+     * oppure +infinito se v non è raggiungibile.
+     *
+     * PriorityQueue<PQNode> funge da min-heap ordinato per dist ⇒ poll() estrae sempre il nodo
+     * col minor costo provvisorio.
+     * Quando migliora dist[v] si inserisce una nuova voce in coda;
+     * settled[] permette di ignorare eventuali voci “vecchie” quando vengono estratte.
+     * Per ogni arco (u,v,w), se dist[u] + w < dist[v] allora aggiorna dist[v] e reinserisce v nella coda.
+     *
+     * La seconda versione scrive le distanze in un array dist[] già allocato e riusa
+     * settled[] e la coda del Workspace, così un worker non alloca nulla per ogni sorgente.
+     * Se il Workspace ha un IndexedHeap si usa dijkstraHeap, che aggiorna la chiave del nodo in coda
+     * invece di inserire una nuova voce; se ha un RadixHeap si usa dijkstraRadix, e dijkstraQueue quando
+     * dijkstraRadix trova un peso non intero.
+     */
+    static double[] dijkstra(Grafo g, int s) {
+        double[] dist = new double[g.n];
+        dijkstra(g, s, dist, new Workspace(g));
+        return dist;
+    }
+
+    static void dijkstra(Grafo g, int s, double[] dist, Workspace ws) {
+        Metriche m = ws.metriche;
+        long t0 = m != null ? System.nanoTime() : 0;
+        if (ws.heap != null) {
+            dijkstraHeap(g, s, dist, ws);
+        } else if (ws.radix == null || !dijkstraRadix(g, s, dist, ws)) {
+            dijkstraQueue(g, s, dist, ws);
+        }
+        if (m != null) m.dijkstra.add(System.nanoTime() - t0);
+    }
+
+    // Versione con PriorityQueue e inserimento pigro (vedi sopra).
+    static void dijkstraQueue(Grafo g, int s, double[] dist, Workspace ws) {
+        Metriche m = ws.metriche;
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        boolean[] settled = ws.settled;
+        Arrays.fill(settled, false);
+        PriorityQueue<PQNode> pq = ws.pq;
+        pq.clear();
+
+        dist[s] = 0.0;
+        pq.add(new PQNode(s, 0.0));
+        if (m != null) m.push++;
+
+        while (!pq.isEmpty()) {
+            PQNode minNode = pq.poll();
+            int u = minNode.i;
+            if (m != null) m.pop++;
+            if (settled[u]) {
+                if (m != null) m.scartati++;
+                continue;
+            }
+            settled[u] = true;
+            if (m != null) m.rilassati += g.offsets[u + 1] - g.offsets[u];
+
+            for (int p = g.offsets[u]; p < g.offsets[u + 1]; p++) {
+                int v = g.targets[p];
+                double nd = dist[u] + g.weights[p];
+                if (nd < dist[v]) {
+                    dist[v] = nd;
+                    pq.add(new PQNode(v, nd));
+                    if (m != null) m.push++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Variante di Dijkstra con IndexedHeap: ogni nodo è in coda al più una volta
+     * e il miglioramento di dist[v] diventa un decrease-key.
+     * Un nodo già estratto (settled) non viene più reinserito, esattamente come le voci
+     * "vecchie" scartate dalla versione con PriorityQueue, quindi le distanze coincidono.
+     */
+    static void dijkstraHeap(Grafo g, int s, double[] dist, Workspace ws) {
+        Metriche m = ws.metriche;
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        boolean[] settled = ws.settled;
+        Arrays.fill(settled, false);
+        IndexedHeap heap = ws.heap;
+        heap.clear();
+
+        dist[s] = 0.0;
+        heap.insertOrDecrease(s, 0.0);
+        if (m != null) m.push++;
+
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+            settled[u] = true;
+            if (m != null) {
+                m.pop++;
+                m.rilassati += g.offsets[u + 1] - g.offsets[u];
+            }
+
+            for (int p = g.offsets[u]; p < g.offsets[u + 1]; p++) {
+                int v = g.targets[p];
+                double nd = dist[u] + g.weights[p];
+                if (nd < dist[v]) {
+                    dist[v] = nd;
+                    if (!settled[v]) {
+                        heap.insertOrDecrease(v, nd);
+                        if (m != null) m.push++;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Variante di Dijkstra per i grafi a pesi interi (g.pesiInteri): distanze long in ws.ldist e RadixHeap
+     * con inserimento pigro, senza confronti in virgola mobile. Una voce estratta con chiave diversa da ldist[u]
+     * è vecchia e si scarta (il nodo è già stato estratto con una chiave minore).
+     * Alla fine ldist viene copiato in dist: gli interi sotto 2^53 sono esatti in double, quindi la riga coincide
+     * con quella di dijkstra e anche i confronti con Tol in searchPath diventano uguaglianze esatte.
+     * I pesi sono già stati controllati una volta da Workspace (g.pesiInteri()), quindi nel ciclo il peso
+     * si converte solo in long; resta un confronto tra long contro le distanze oltre 2^53: in quel caso
+     * ritorna false senza toccare dist e il chiamante rifà la sorgente con dijkstraQueue.
+     */
+    static boolean dijkstraRadix(Grafo g, int s, double[] dist, Workspace ws) {
+        Metriche m = ws.metriche;
+        long[] d = ws.ldist;
+        Arrays.fill(d, Long.MAX_VALUE);
+        RadixHeap heap = ws.radix;
+        heap.clear();
+
+        d[s] = 0;
+        heap.push(0, s);
+        if (m != null) m.push++;
+
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+            long du = heap.ultimo;
+            if (m != null) m.pop++;
+            if (du != d[u]) {
+                if (m != null) m.scartati++;
+                continue;
+            }
+            if (m != null) m.rilassati += g.offsets[u + 1] - g.offsets[u];
+
+            for (int p = g.offsets[u]; p < g.offsets[u + 1]; p++) {
+                int v = g.targets[p];
+                long nd = du + (long) g.weights[p];
+                if (nd >= 1L << 53) return false;
+                if (nd < d[v]) {
+                    d[v] = nd;
+                    heap.push(nd, v);
+                    if (m != null) m.push++;
+                }
+            }
+        }
+
+        for (int v = 0; v < g.n; v++) {
+            dist[v] = d[v] == Long.MAX_VALUE ? Double.POSITIVE_INFINITY : (double) d[v];
+        }
+        return true;
+    }
+
+    // Tolleranza numerica
+    static final double Tol = 1e-7;
+
+    /**
+     * Estrae fino a K cammini minimi edge-disjoint tra s e t.
+     * Ripete K volte una DFS (searchPath) che segue solo passi con distS[u]+w(u,v) uguale distS[v],
+     *   così ogni cammino trovato ha costo distS[t] (quindi è minimo).
+     * Dopo ogni cammino, “banna” i suoi archi non orientati per impedire il riuso e garantire cammini edge-disjoint.
+     * Se t è irraggiungibile (distS[t]=∞), ritorna vuoto.
+     * Ritorna 0..K cammini come array di nodi [s,…,t].
+     *
+     * Per tenere traccia degli archi già usati nei precedenti cammini minimi
+     * uso l'array banned[] del Workspace, indicizzato con l'id intero dell'arco non orientato
+     * (lo stesso per (u,v) e (v,u), assegnato durante la lettura del file).
+     * Invece di svuotarlo a ogni coppia si usa un "epoch": un arco è bannato se banned[id] == epoch,
+     * e per passare alla coppia successiva basta incrementare epoch --> azzeramento in O(1).
+     * Come con la vecchia chiave "u-v", si bannano tutti gli archi paralleli tra u e v,
+     * scorrendo una sola volta la lista di adiacenza di u per ogni passo del cammino trovato.
+     * Il controllo nel ciclo interno della DFS diventa quindi un accesso a un int[], senza stringhe né hash.
+     */
+    static List<int[]> findKPaths(Grafo g, int s, int t, int K, double[] distS) {
+        return findKPaths(g, s, t, K, distS, new Workspace(g));
+    }
+
+    static List<int[]> findKPaths(Grafo g, int s, int t, int K, double[] distS, Workspace ws) {
+        List<int[]> result = new ArrayList<>();
+        if (!Double.isFinite(distS[t])) return result;
+
+        int epoch = ws.nextEpoch();
+        int[] banned = ws.banned;
+
+        for (int k = 0; k < K; k++) {
+            int len = searchPath(g, s, t, distS, ws);
+            if (len == 0) break;
+
+            int[] path = Arrays.copyOf(ws.pathNodes, len);
+            result.add(path);
+            for (int i = 0; i + 1 < len; i++) {
+                int u = path[i], v = path[i + 1];
+                ws.on[u] = false;
+                for (int p = g.offsets[u]; p < g.offsets[u + 1]; p++) {
+                    if (g.targets[p] == v) banned[g.edgeIds[p]] = epoch;
+                }
+            }
+            ws.on[t] = false;
+        }
+        return result;
+    }
+
+    /**
+     * Cerca un cammino minimo da s a t con una ricerca in profondità (DFS) iterativa,
+     * con uno stack esplicito al posto della ricorsione (così non si va in StackOverflow sui cammini lunghi):
+     *   pathNodes[d] -> nodo alla profondità d del cammino corrente
+     *   pathNext[d]  -> prossima posizione da esaminare nella lista di adiacenza di pathNodes[d]
+     * Visita i vicini v di u scartando:
+     *   archi già usati (banned[id] == epoch)
+     *   nodi già nel cammino per evitare cicli (on[v]),
+     *   passi non “in avanti”: distS[u] + w(u,v) diverso da distS[v] per garantire che sia un cammino minimo.
+     * Se un nodo non ha più vicini validi si torna indietro (backtracking) togliendolo dal cammino.
+     * L'ordine di visita è lo stesso della versione ricorsiva.
+     * Se raggiunge t, ritorna la lunghezza del cammino lasciato in pathNodes (con on[] ancora impostato sui suoi nodi),
+     * altrimenti ritorna 0.
+     */
+    static int searchPath(Grafo g, int s, int t, double[] distS, Workspace ws) {
+        int[] nodes = ws.pathNodes;
+        int[] next = ws.pathNext;
+        boolean[] on = ws.on;
+        int[] banned = ws.banned;
+        int epoch = ws.epoch;
+        Metriche m = ws.metriche;
+
+        int depth = 0;
+        nodes[0] = s;
+        next[0] = g.offsets[s];
+        on[s] = true;
+
+        while (depth >= 0) {
+            int u = nodes[depth];
+            if (u == t) return depth + 1;
+
+            int end = g.offsets[u + 1];
+            int p = next[depth];
+            for (; p < end; p++) {
+                int v = g.targets[p];
+
+                if (banned[g.edgeIds[p]] == epoch) {
+                    if (m != null) m.bannati++;
+                    continue;
+                }
+                if (on[v]) continue;
+                if (!(Math.abs(distS[u] + g.weights[p] - distS[v]) <= Tol)) continue;
+                break;
+            }
+
+            if (p < end) {
+                int v = g.targets[p];
+                next[depth] = p + 1;
+                depth++;
+                nodes[depth] = v;
+                next[depth] = g.offsets[v];
+                on[v] = true;
+                if (m != null) m.visitati++;
+            } else {
+                on[u] = false;
+                depth--;
+                if (m != null) m.backtrack++;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * FlowPaths: estrazione alternativa dei cammini (--estrazione flusso) con un flusso massimo a capacità unitaria
+     * sul DAG degli archi tesi, invece della DFS greedy di findKPaths.
+     * Il DAG della sorgente s (archi con distS[u] + w == distS[v] entro Tol) si costruisce una volta sola in CSR
+     * e si riusa per tutti i target della stessa sorgente:
+     *          off, da, to -> liste di archi del DAG per nodo, nello stesso ordine delle liste di adiacenza
+     *          rev -> indice dell'arco opposto (v, u), che fa da arco residuo
+     *          base, cap -> capacità iniziale (1 se l'arco è teso in quel verso, altrimenti 0) e capacità residua
+     * Gli archi paralleli tra u e v diventano un solo arco, come la chiave "u-v" della versione greedy;
+     * un arco di peso 0 teso in entrambi i versi dà due archi di capacità 1 l'uno residuo dell'altro,
+     * così il flusso netto sull'arco non orientato resta al più 1.
+     * Per ogni target si cercano al più K cammini aumentanti con una BFS sul residuo (Edmonds–Karp limitato a K):
+     * tempo O(K * archi del DAG) per coppia, senza il backtracking esponenziale della DFS sui pareggi,
+     * e se esistono K cammini disgiunti negli archi li trova tutti.
+     * Il flusso si scompone poi in cammini partendo da s; gli eventuali cicli vengono scartati.
+     * Alla fine le capacità toccate tornano a base, pronte per il target successivo.
+     */
+    static class FlowPaths {
+        final int[] off;
+        final int[] da;
+        final int[] to;
+        final int[] rev;
+        final byte[] base;
+        final byte[] cap;
+        private final int[] dove;
+        private final int[] visto;
+        private int stamp = 0;
+        private final int[] padre;
+        private final int[] coda;
+        private final int[] cammino;
+        private final int[] posizione;
+        private int[] toccati = new int[64];
+        private int nToccati = 0;
+        private final int[] entrantiOff;
+        private final int[] entranti;
+        int sorgente = -1;
+        private double[] riga;
+
+        FlowPaths(Grafo g) {
+            int n = g.n;
+            int size = g.targets.length;
+            this.off = new int[n + 1];
+            this.da = new int[size];
+            this.to = new int[size];
+            this.rev = new int[size];
+            this.base = new byte[size];
+            this.cap = new byte[size];
+            this.dove = new int[n];
+            this.visto = new int[n];
+            this.padre = new int[n];
+            this.coda = new int[n];
+            this.cammino = new int[n + 1];
+            this.posizione = new int[n];
+            this.entrantiOff = new int[n + 1];
+            this.entranti = new int[size];
+        }
+
+        // Il DAG costruito non vale più (la riga della sorgente è stata modificata sul posto).
+        void invalidate() {
+            sorgente = -1;
+            riga = null;
+        }
+
+        private int nextStamp() {
+            if (stamp == Integer.MAX_VALUE) {
+                Arrays.fill(visto, 0);
+                stamp = 0;
+            }
+            return ++stamp;
+        }
+
+        // Costruisce il DAG degli archi tesi della sorgente s, se non è già quello corrente.
+        void prepare(Grafo g, int s, double[] distS) {
+            if (sorgente == s && riga == distS) return;
+            int n = g.n;
+            int k = 0;
+            for (int u = 0; u < n; u++) {
+                off[u] = k;
+                if (!Double.isFinite(distS[u])) continue;
+                int st = nextStamp();
+                for (int p = g.offsets[u]; p < g.offsets[u + 1]; p++) {
+                    int v = g.targets[p];
+                    if (v == u || !Double.isFinite(distS[v])) continue;
+                    double w = g.weights[p];
+                    boolean avanti = Math.abs(distS[u] + w - distS[v]) <= Tol;
+                    boolean indietro = Math.abs(distS[v] + w - distS[u]) <= Tol;
+                    if (!avanti && !indietro) continue;
+                    if (visto[v] == st) {
+                        if (avanti) base[dove[v]] = 1;
+                        continue;
+                    }
+                    visto[v] = st;
+                    dove[v] = k;
+                    da[k] = u;
+                    to[k] = v;
+                    base[k] = (byte) (avanti ? 1 : 0);
+                    k++;
+                }
+            }
+            off[n] = k;
+            System.arraycopy(base, 0, cap, 0, k);
+
+            // Collega ogni arco (u, v) al suo opposto (v, u): gli archi entranti in v, raggruppati con un
+            // counting sort, si abbinano alla posizione di u nella lista di v.
+            Arrays.fill(entrantiOff, 0);
+            for (int a = 0; a < k; a++) entrantiOff[to[a] + 1]++;
+            for (int v = 0; v < n; v++) entrantiOff[v + 1] += entrantiOff[v];
+            int[] next = Arrays.copyOf(entrantiOff, n);
+            for (int a = 0; a < k; a++) entranti[next[to[a]]++] = a;
+            for (int v = 0; v < n; v++) {
+                int st = nextStamp();
+                for (int a = off[v]; a < off[v + 1]; a++) {
+                    visto[to[a]] = st;
+                    dove[to[a]] = a;
+                }
+                for (int i = entrantiOff[v]; i < entrantiOff[v + 1]; i++) {
+                    int a = entranti[i];
+                    rev[a] = dove[da[a]];
+                }
+            }
+            sorgente = s;
+            riga = distS;
+        }
+
+        private void push(int a) {
+            if (nToccati + 2 > toccati.length) toccati = Arrays.copyOf(toccati, toccati.length * 2);
+            toccati[nToccati++] = a;
+            toccati[nToccati++] = rev[a];
+            cap[a]--;
+            cap[rev[a]]++;
+        }
+
+        // BFS sul residuo da s a t; ritorna false se t non è raggiungibile.
+        private boolean augment(int s, int t) {
+            int st = nextStamp();
+            int testa = 0, fine = 0;
+            coda[fine++] = s;
+            visto[s] = st;
+            while (testa < fine) {
+                int u = coda[testa++];
+                for (int a = off[u]; a < off[u + 1]; a++) {
+                    int v = to[a];
+                    if (cap[a] <= 0 || visto[v] == st) continue;
+                    visto[v] = st;
+                    padre[v] = a;
+                    if (v == t) {
+                        for (int x = t; x != s; ) {
+                            int b = padre[x];
+                            push(b);
+                            x = da[b];
+                        }
+                        return true;
+                    }
+                    coda[fine++] = v;
+                }
+            }
+            return false;
+        }
+
+        List<int[]> paths(Grafo g, int s, int t, int K, double[] distS) {
+            List<int[]> result = new ArrayList<>();
+            if (!Double.isFinite(distS[t])) return result;
+            prepare(g, s, distS);
+
+            int flusso = 0;
+            while (flusso < K && augment(s, t)) flusso++;
+
+            // Scomposizione: da s si segue un arco con flusso positivo (cap < base) togliendo un'unità alla volta;
+            // se si torna su un nodo già nel cammino il ciclo viene tagliato.
+            for (int f = 0; f < flusso; f++) {
+                int st = nextStamp();
+                int len = 0;
+                cammino[len++] = s;
+                visto[s] = st;
+                posizione[s] = 0;
+                int u = s;
+                while (u != t) {
+                    int a = off[u];
+                    while (cap[a] >= base[a]) a++;
+                    cap[a]++;
+                    cap[rev[a]]--;
+                    int v = to[a];
+                    if (visto[v] == st) {
+                        for (int i = posizione[v] + 1; i < len; i++) visto[cammino[i]] = 0;
+                        len = posizione[v] + 1;
+                    } else {
+                        visto[v] = st;
+                        posizione[v] = len;
+                        cammino[len++] = v;
+                    }
+                    u = v;
+                }
+                result.add(Arrays.copyOf(cammino, len));
+            }
+
+            for (int i = 0; i < nToccati; i++) cap[toccati[i]] = base[toccati[i]];
+            nToccati = 0;
+            return result;
+        }
+    }
+
+    // Converte il cammino in stringa leggibile. Nodi formattati come “N0 -> N5 -> N12”
+    static String formatPath(int[] path) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < path.length; i++) {
+            if (i > 0) sb.append(" -> ");
+            sb.append("N").append(path[i]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * ResultWriter: scrive i risultati delle coppie in un buffer di byte riutilizzabile,
+     * senza String.format né String intermedie per numeri e cammini.
+     *          formato -> TESTO (lo stesso della stampa originale), TSV oppure BINARIO
+     *          out -> stream di destinazione; se null il buffer cresce e si legge con toByteArray()
+     *                 (usato dai worker paralleli, che consegnano un blocco per sorgente)
+     *          buf, len -> buffer e numero di byte validi; con out != null viene svuotato quando è pieno
+     *          nodi -> se non null, i nodi vengono scritti come nodi[v] (sottografo di una componente, vedi runComponents)
+     *          metriche -> se non null, riceve byte e tempi di ogni write su out (le Metriche totali dell'esecuzione)
+     *
+     * Il costo è scritto in virgola fissa con due decimali (writeFixed2), con lo stesso risultato
+     * di String.format("%.2f"); il cammino inverso si scrive scorrendo all'indietro lo stesso int[].
+     *
+     * Formato TSV (solo coppie s < t, una per riga, con intestazione):
+     *     s, t, costo ("inf" se disconnessi), poi un campo per ogni cammino con i nodi separati da virgole.
+     * Formato BINARIO (big-endian, come DataOutputStream):
+     *     intestazione: 4 byte "E3R1", int n
+     *     per ogni coppia s < t: int s, int t, double costo (+infinito se disconnessi), byte k,
+     *     poi per ognuno dei k cammini: int lunghezza, lunghezza x int nodi.
+     */
+    static class ResultWriter {
+        static final int TESTO = 0, TSV = 1, BINARIO = 2;
+
+        private static final byte[] COPPIA = ascii("Coppia: N");
+        private static final byte[] FRECCIA = ascii(" -> N");
+        private static final byte[] DISCONNESSI = ascii("  (disconnessi)\n");
+        private static final byte[] COSTO = ascii("  (costo minimo = ");
+        private static final byte[] CAMMINO = ascii("  Cammino ");
+        private static final byte[] INF = ascii("inf");
+
+        final int formato;
+        final OutputStream out;
+        byte[] buf = new byte[1 << 16];
+        int len = 0;
+        int[] nodi = null;
+        Metriche metriche = null;
+
+        ResultWriter(int formato, OutputStream out) {
+            this.formato = formato;
+            this.out = out;
+        }
+
+        static byte[] ascii(String s) {
+            return s.getBytes(java.nio.charset.StandardCharsets.US_ASCII);
+        }
+
+        // Per i testi che possono contenere l'input dell'utente (per esempio le righe di errore del server).
+        static byte[] utf8(String s) {
+            return s.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        }
+
+        // Garantisce spazio per k byte: svuota il buffer su out se possibile, altrimenti lo ingrandisce.
+        private void ensure(int k) throws IOException {
+            if (len + k <= buf.length) return;
+            if (out != null) {
+                flush();
+                if (k <= buf.length) return;
+            }
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + k));
+        }
+
+        void flush() throws IOException {
+            if (out != null && len > 0) {
+                long t0 = metriche != null ? System.nanoTime() : 0;
+                out.write(buf, 0, len);
+                if (metriche != null) metriche.scrittura(len, System.nanoTime() - t0);
+                len = 0;
+            }
+        }
+
+        void reset() {
+            len = 0;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, len);
+        }
+
+        void writeByte(int b) throws IOException {
+            ensure(1);
+            buf[len++] = (byte) b;
+        }
+
+        void writeBytes(byte[] b) throws IOException {
+            ensure(b.length);
+            System.arraycopy(b, 0, buf, len, b.length);
+            len += b.length;
+        }
+
+        // Scrive un intero in decimale riempiendo le cifre da destra.
+        void writeInt(int v) throws IOException {
+            ensure(11);
+            long x = v;
+            if (x < 0) {
+                buf[len++] = '-';
+                x = -x;
+            }
+            int digits = 1;
+            for (long p = 10; p <= x; p *= 10) digits++;
+            for (int i = len + digits - 1; i >= len; i--) {
+                buf[i] = (byte) ('0' + x % 10);
+                x /= 10;
+            }
+            len += digits;
+        }
+
+        /**
+         * Scrive d con due decimali, come String.format(Locale.US, "%.2f", d).
+         * Per 0 <= d < 1e7 si arrotonda d*100 all'intero più vicino: l'errore del prodotto in double è
+         * molto più piccolo della finestra attorno a ,5 oltre la quale il risultato è certo.
+         * Vicino al pareggio String.format arrotonda la rappresentazione decimale più corta di d
+         * (13.635 diventa 13.64 anche se il double vale 13.63499...), quindi in quei casi,
+         * e per valori negativi o molto grandi, si usa direttamente String.format.
+         */
+        void writeFixed2(double d) throws IOException {
+            double scaled = d * 100;
+            double frac = scaled - Math.floor(scaled);
+            if (!(d >= 0 && d < 1e7) || Double.doubleToRawLongBits(d) < 0 || Math.abs(frac - 0.5) < 1e-4) {
+                writeBytes(ascii(String.format(Locale.US, "%.2f", d)));
+                return;
+            }
+            long r = Math.round(scaled);
+            ensure(12);
+            long intero = r / 100;
+            int cent = (int) (r % 100);
+            writeInt((int) intero);
+            buf[len++] = '.';
+            buf[len++] = (byte) ('0' + cent / 10);
+            buf[len++] = (byte) ('0' + cent % 10);
+        }
+
+        void writeIntBinary(int v) throws IOException {
+            ensure(4);
+            buf[len++] = (byte) (v >>> 24);
+            buf[len++] = (byte) (v >>> 16);
+            buf[len++] = (byte) (v >>> 8);
+            buf[len++] = (byte) v;
+        }
+
+        void writeDoubleBinary(double d) throws IOException {
+            long bits = Double.doubleToLongBits(d);
+            writeIntBinary((int) (bits >>> 32));
+            writeIntBinary((int) bits);
+        }
+
+        // Intestazione del file, scritta solo dal formato binario e dal TSV.
+        void writeHeader(int n) throws IOException {
+            if (formato == BINARIO) {
+                writeBytes(ascii("E3R1"));
+                writeIntBinary(n);
+            } else if (formato == TSV) {
+                writeBytes(ascii("s\tt\tcosto\tcammino1\tcammino2\tcammino3\n"));
+            }
+        }
+
+        // Cammino in formato testo "Na -> Nb -> ...", in avanti o all'indietro sullo stesso array.
+        private void writePathText(int[] p, boolean inverso) throws IOException {
+            writeByte('N');
+            writeInt(nodo(inverso ? p[p.length - 1] : p[0]));
+            for (int i = 1; i < p.length; i++) {
+                writeBytes(FRECCIA);
+                writeInt(nodo(inverso ? p[p.length - 1 - i] : p[i]));
+            }
+        }
+
+        private void writeTextHeader(int a, int b) throws IOException {
+            writeBytes(COPPIA);
+            writeInt(nodo(a));
+            writeBytes(FRECCIA);
+            writeInt(nodo(b));
+        }
+
+        private int nodo(int v) {
+            return nodi == null ? v : nodi[v];
+        }
+
+        // Coppia (s, t) con s < t; nel formato testo stampa anche la coppia inversa con i cammini invertiti.
+        void writePair(int s, int t, double D, List<int[]> paths) throws IOException {
+            if (formato == TESTO) {
+                writeByte('\n');
+                for (int dir = 0; dir < 2; dir++) {
+                    boolean inverso = dir == 1;
+                    writeTextHeader(inverso ? t : s, inverso ? s : t);
+                    if (paths == null) {
+                        writeBytes(DISCONNESSI);
+                        continue;
+                    }
+                    writeBytes(COSTO);
+                    writeFixed2(D);
+                    writeByte(')');
+                    writeByte('\n');
+                    for (int k = 0; k < paths.size(); k++) {
+                        writeBytes(CAMMINO);
+                        writeInt(k + 1);
+                        writeByte(':');
+                        writeByte(' ');
+                        writeByte(' ');
+                        writePathText(paths.get(k), inverso);
+                        writeByte('\n');
+                    }
+                }
+            } else if (formato == TSV) {
+                writeInt(nodo(s));
+                writeByte('\t');
+                writeInt(nodo(t));
+                writeByte('\t');
+                if (paths == null) {
+                    writeBytes(INF);
+                } else {
+                    writeFixed2(D);
+                    for (int[] p : paths) {
+                        writeByte('\t');
+                        for (int i = 0; i < p.length; i++) {
+                            if (i > 0) writeByte(',');
+                            writeInt(nodo(p[i]));
+                        }
+                    }
+                }
+                writeByte('\n');
+            } else {
+                writeIntBinary(nodo(s));
+                writeIntBinary(nodo(t));
+                writeDoubleBinary(paths == null ? Double.POSITIVE_INFINITY : D);
+                writeByte(paths == null ? 0 : paths.size());
+                if (paths != null) {
+                    for (int[] p : paths) {
+                        writeIntBinary(p.length);
+                        for (int v : p) writeIntBinary(nodo(v));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Scrive con out il risultato di una coppia (s, t) con s < t:
+     *   se distS[t] è +infinito i due nodi sono disconnessi,
+     *   altrimenti si scrivono il costo e i cammini trovati da extractPaths (nel formato testo anche la coppia inversa).
+     */
+    static void appendPair(ResultWriter out, Grafo g, int s, int t, double[] distS, Workspace ws) throws IOException {
+        double D = distS[t];
+        if (!Double.isFinite(D)) {
+            out.writePair(s, t, D, null);
+            return;
+        }
+        out.writePair(s, t, D, extractPaths(g, s, t, 3, distS, ws));
+    }
+
+    // Al più K cammini minimi disgiunti negli archi: FlowPaths se il Workspace ce l'ha, altrimenti findKPaths.
+    static List<int[]> extractPaths(Grafo g, int s, int t, int K, double[] distS, Workspace ws) {
+        Metriche m = ws.metriche;
+        long t0 = m != null ? System.nanoTime() : 0;
+        List<int[]> paths = ws.flow != null ? ws.flow.paths(g, s, t, K, distS) : findKPaths(g, s, t, K, distS, ws);
+        if (m != null) m.estrazione.add(System.nanoTime() - t0);
+        return paths;
+    }
+
+    // Scrive tutte le coppie (s, t) con t > s, che dipendono solo dalla riga distS della sorgente s.
+    static void appendSource(ResultWriter out, Grafo g, int s, double[] distS, Workspace ws) throws IOException {
+        for (int t = s + 1; t < g.n; t++) {
+            appendPair(out, g, s, t, distS, ws);
+        }
+    }
+
+    /**
+     * Esecuzione in streaming (sequenziale): invece di tenere in memoria tutta la matrice dist[n][n]
+     * si calcola la riga di una sorgente nel buffer ws.dist, si stampano subito tutte le sue coppie (s, t) con t > s
+     * e si riusa lo stesso buffer per la sorgente successiva.
+     * Memoria di picco O(n + m) invece di O(n^2) e i primi risultati escono dopo la prima Dijkstra.
+     */
+    static void runStreaming(Grafo g, Motore motore, ResultWriter out) throws IOException {
+        Workspace ws = new Workspace(g, motore);
+        for (int s = 0; s < g.n; s++) {
+            dijkstra(g, s, ws.dist, ws);
+            appendSource(out, g, s, ws.dist, ws);
+        }
+        motore.raccogli(ws);
+    }
+
+    /**
+     * Esecuzione parallela: le sorgenti sono indipendenti, quindi ogni sorgente s diventa un task
+     * eseguito da un pool fisso di 'threads' worker.
+     * Ogni worker ha il proprio Workspace e il proprio ResultWriter in memoria (ThreadLocal)
+     * e riusa gli stessi buffer per tutte le sue sorgenti:
+     * il task calcola Dijkstra da s nella riga ws.dist e produce subito i byte delle coppie (s, t) con t > s,
+     * perché findKPaths legge solo la riga della sorgente. È quindi sempre in streaming: nessuna matrice n x n.
+     * I risultati vengono stampati scorrendo i Future in ordine di sorgente,
+     * quindi l'output è identico a quello dell'esecuzione sequenziale.
+     * Si tengono in volo al più 'finestra' sorgenti (2 per worker): un task nuovo viene inviato solo dopo
+     * aver stampato il blocco più vecchio, così i blocchi già pronti in attesa di stampa restano limitati.
+     */
+    static void runParallel(Grafo g, int threads, Motore motore, ResultWriter out) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ThreadLocal<Workspace> workspaces = ThreadLocal.withInitial(() -> new Workspace(g, motore));
+        ThreadLocal<ResultWriter> writers = ThreadLocal.withInitial(() -> new ResultWriter(out.formato, null));
+        int finestra = 2 * threads;
+        try {
+            ArrayDeque<Future<byte[]>> blocchi = new ArrayDeque<>(finestra);
+            int nextSource = 0;
+            while (nextSource < g.n || !blocchi.isEmpty()) {
+                while (nextSource < g.n && blocchi.size() < finestra) {
+                    final int src = nextSource++;
+                    blocchi.add(pool.submit(() -> {
+                        Workspace ws = workspaces.get();
+                        dijkstra(g, src, ws.dist, ws);
+                        ResultWriter w = writers.get();
+                        w.reset();
+                        w.nodi = out.nodi;
+                        appendSource(w, g, src, ws.dist, ws);
+                        motore.raccogli(ws);
+                        return w.toByteArray();
+                    }));
+                }
+                try {
+                    out.writeBytes(blocchi.poll().get());
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Esecuzione per componenti connesse (--componenti): le etichette di UnionFind dividono i nodi in componenti
+     * e ogni componente con almeno 2 nodi viene risolta sul proprio sottografo compatto (Grafo.sottografo),
+     * con Dijkstra e righe di distanza lunghe quanto la componente invece che n.
+     * Le coppie connesse si stampano come sempre (ResultWriter.nodi riporta i nodi agli indici originali),
+     * componente per componente in ordine di nodo minimo; le coppie disconnesse non si stampano una per una
+     * ma si riassumono alla fine con una riga per componente i, contro tutte le componenti successive
+     * (che hanno n - inizio[i + 1] nodi), e il totale:
+     *     "Disconnessi: componente 0 (6 nodi) x componenti 1..4 (94 nodi): 564 coppie"
+     *     "Coppie disconnesse in totale: 1234"
+     * Con intervalli (--intervalli) la componente i è scritta con i suoi nodi a intervalli "N3..N7":
+     *     "Disconnessi: N0..N4, N9 x componenti 1..4 (94 nodi): 6 * 94 coppie"
+     * Ogni nodo compare una sola volta nel riassunto, quindi anche con molti nodi isolati
+     * l'output è lineare in n e non quadratico nel numero di componenti.
+     * Con i formati tsv e bin l'elenco delle componenti e il riassunto vanno su stderr.
+     */
+    static void runComponents(Grafo g, int threads, Motore motore, boolean intervalli, ResultWriter out) throws Exception {
+        int n = g.n;
+        int[] comp = g.componenti();
+        int k = g.numComponenti();
+        int[] inizio = new int[k + 1];
+        for (int v = 0; v < n; v++) inizio[comp[v] + 1]++;
+        for (int c = 0; c < k; c++) inizio[c + 1] += inizio[c];
+        int[] ordinati = new int[n];
+        int[] next = Arrays.copyOf(inizio, k);
+        for (int v = 0; v < n; v++) ordinati[next[comp[v]]++] = v;
+
+        boolean testo = out.formato == ResultWriter.TESTO;
+        StringBuilder sb = new StringBuilder();
+        sb.append("Componenti connesse: ").append(k).append('\n');
+        for (int c = 0; c < k; c++) {
+            sb.append("Componente ").append(c).append(" (").append(inizio[c + 1] - inizio[c]).append(" nodi): ");
+            appendNodi(sb, ordinati, inizio[c], inizio[c + 1], intervalli);
+            sb.append('\n');
+        }
+        riassunto(sb, testo, out);
+
+        int[] locale = new int[n];
+        int[] idLocale = new int[Math.max(g.edgeCount(), 1)];
+        Arrays.fill(idLocale, -1);
+        for (int c = 0; c < k; c++) {
+            int size = inizio[c + 1] - inizio[c];
+            if (size < 2) continue;
+            int[] nodi = Arrays.copyOfRange(ordinati, inizio[c], inizio[c + 1]);
+            Grafo sub = g.sottografo(nodi, locale, idLocale);
+            out.nodi = nodi;
+            if (threads > 1 && size >= 4 * threads) runParallel(sub, threads, motore, out);
+            else runStreaming(sub, motore, out);
+        }
+        out.nodi = null;
+
+        // Una riga per componente i contro tutte le successive: i nodi dopo la componente i sono n - inizio[i + 1].
+        sb.setLength(0);
+        long totale = 0;
+        for (int i = 0; i + 1 < k; i++) {
+            long a = inizio[i + 1] - inizio[i];
+            long b = n - inizio[i + 1];
+            sb.append("Disconnessi: ");
+            if (intervalli) appendNodi(sb, ordinati, inizio[i], inizio[i + 1], true);
+            else sb.append("componente ").append(i).append(" (").append(a).append(" nodi)");
+            sb.append(" x ").append(i + 2 == k ? "componente " : "componenti ").append(i + 1);
+            if (i + 2 < k) sb.append("..").append(k - 1);
+            sb.append(" (").append(b).append(" nodi): ");
+            if (intervalli) sb.append(a).append(" * ").append(b).append(" coppie\n");
+            else sb.append(a * b).append(" coppie\n");
+            totale += a * b;
+            if (sb.length() >= 1 << 16) riassunto(sb, testo, out);
+        }
+        if (k > 1) sb.append("Coppie disconnesse in totale: ").append(totale).append('\n');
+        riassunto(sb, testo, out);
+    }
+
+    // Testo di riepilogo: nell'output se il formato è testo, altrimenti su stderr. Svuota sb.
+    private static void riassunto(StringBuilder sb, boolean testo, ResultWriter out) throws IOException {
+        if (sb.length() == 0) return;
+        if (testo) {
+            out.writeByte('\n');
+            out.writeBytes(ResultWriter.ascii(sb.toString()));
+        } else {
+            System.err.print(sb);
+        }
+        sb.setLength(0);
+    }
+
+    // Nodi ordinati[da..a) separati da virgole; con intervalli le sequenze consecutive diventano "Ni..Nj".
+    private static void appendNodi(StringBuilder sb, int[] ordinati, int da, int a, boolean intervalli) {
+        for (int p = da; p < a; p++) {
+            if (p > da) sb.append(", ");
+            int q = p;
+            if (intervalli) {
+                while (q + 1 < a && ordinati[q + 1] == ordinati[q] + 1) q++;
+            }
+            appendIntervallo(sb, ordinati[p], ordinati[q]);
+            p = q;
+        }
+    }
+
+    private static void appendIntervallo(StringBuilder sb, int da, int a) {
+        sb.append('N').append(da);
+        if (a > da) sb.append("..N").append(a);
+    }
+
+    /**
+     * Landmarks: distanze esatte da pochi nodi "punto di riferimento" (ALT = A*, Landmarks, Triangle inequality).
+     *          dist[i][v] -> distanza dal landmark i al nodo v (+infinito se non raggiungibile)
+     * Per la disuguaglianza triangolare, per ogni landmark L vale d(v, t) >= |d(L, t) - d(L, v)|,
+     * quindi bound(v, t) = max sui landmark è una stima dal basso (ammissibile e consistente) della distanza v -> t.
+     * Se un landmark raggiunge uno solo dei due nodi, v e t stanno in componenti diverse e la stima è +infinito.
+     *
+     * build: scelta "farthest point": il primo landmark è il nodo più lontano dal nodo 0,
+     *   ogni landmark successivo è il nodo con distanza minima più grande da quelli già scelti
+     *   (i nodi non raggiunti da nessun landmark hanno la priorità, così si coprono anche le altre componenti).
+     *   Costo: k esecuzioni complete di Dijkstra, memoria k * n double.
+     */
+    static class Landmarks {
+        final double[][] dist;
+
+        Landmarks(double[][] dist) {
+            this.dist = dist;
+        }
+
+        static Landmarks build(Grafo g, int k, Workspace ws) {
+            k = Math.min(k, g.n);
+            List<double[]> scelti = new ArrayList<>();
+            double[] minDist = new double[g.n];
+            Arrays.fill(minDist, Double.POSITIVE_INFINITY);
+
+            double[] d0 = new double[g.n];
+            dijkstra(g, 0, d0, ws);
+            int next = 0;
+            for (int v = 0; v < g.n; v++) {
+                if (Double.isFinite(d0[v]) && d0[v] > d0[next]) next = v;
+            }
+
+            while (scelti.size() < k) {
+                double[] d = new double[g.n];
+                dijkstra(g, next, d, ws);
+                scelti.add(d);
+
+                int best = -1;
+                for (int v = 0; v < g.n; v++) {
+                    if (d[v] < minDist[v]) minDist[v] = d[v];
+                    if (minDist[v] > 0 && (best < 0 || minDist[v] > minDist[best])) best = v;
+                }
+                if (best < 0) break;
+                next = best;
+            }
+            return new Landmarks(scelti.toArray(new double[0][]));
+        }
+
+        double bound(int v, int t) {
+            double h = 0;
+            for (double[] d : dist) {
+                double a = d[t], b = d[v];
+                boolean fa = Double.isFinite(a), fb = Double.isFinite(b);
+                if (!fa && !fb) continue;
+                if (fa != fb) return Double.POSITIVE_INFINITY;
+                double x = Math.abs(a - b);
+                if (x > h) h = x;
+            }
+            return h;
+        }
+    }
+
+    /**
+     * AltSearch: ricerca A* da s verso t guidata dai Landmarks, per le interrogazioni punto-punto.
+     *          dist -> etichette in avanti d(s, v); +infinito per i nodi mai raggiunti
+     *          stima -> bound(v, t), calcolata una sola volta quando v viene raggiunto
+     *          touched -> nodi raggiunti, per rimettere dist a +infinito in O(toccati) alla query successiva
+     * La coda (IndexedHeap) è ordinata per dist[v] + stima[v]; se un nodo già estratto migliora viene reinserito,
+     * così le etichette restano esatte anche con piccoli errori di arrotondamento nella stima.
+     * La ricerca non si ferma alla prima estrazione di t ma quando la chiave minima supera D = dist[t]
+     * (con la tolleranza Tol): ogni nodo di un cammino minimo s -> t ha dist + stima <= D, quindi viene estratto
+     * con l'etichetta esatta. Il DAG dei cammini minimi è quindi ricostruibile dalle sole etichette in avanti:
+     * findKPaths usa dist come distS e i nodi non estratti non possono completare un cammino di costo D.
+     * Senza landmark (k = 0) la stima è 0 e la ricerca è un Dijkstra troncato a distanza D.
+     */
+    static class AltSearch {
+        final Grafo g;
+        final Landmarks lm;
+        final double[] dist;
+        final double[] stima;
+        final int[] touched;
+        int touchedCount = 0;
+        final IndexedHeap heap;
+        long estratti = 0;
+
+        AltSearch(Grafo g, Landmarks lm, int arity) {
+            this.g = g;
+            this.lm = lm;
+            this.dist = new double[g.n];
+            this.stima = new double[g.n];
+            this.touched = new int[g.n];
+            this.heap = new IndexedHeap(g.n, Math.max(arity, 2));
+            Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        }
+
+        private void touch(int v, int t) {
+            touched[touchedCount++] = v;
+            stima[v] = lm != null ? lm.bound(v, t) : 0.0;
+        }
+
+        // Calcola le etichette da s necessarie per t e ritorna d(s, t) (+infinito se disconnessi).
+        double search(int s, int t) {
+            for (int i = 0; i < touchedCount; i++) dist[touched[i]] = Double.POSITIVE_INFINITY;
+            touchedCount = 0;
+            heap.clear();
+
+            touch(s, t);
+            if (!Double.isFinite(stima[s])) return Double.POSITIVE_INFINITY;
+            dist[s] = 0.0;
+            heap.insertOrDecrease(s, stima[s]);
+
+            while (!heap.isEmpty()) {
+                double D = dist[t];
+                if (heap.minKey() > D + Tol * (1 + D)) break;
+                int u = heap.poll();
+                estratti++;
+
+                for (int p = g.offsets[u]; p < g.offsets[u + 1]; p++) {
+                    int v = g.targets[p];
+                    double nd = dist[u] + g.weights[p];
+                    if (nd < dist[v]) {
+                        if (dist[v] == Double.POSITIVE_INFINITY) touch(v, t);
+                        dist[v] = nd;
+                        if (Double.isFinite(stima[v])) heap.insertOrDecrease(v, nd + stima[v]);
+                    }
+                }
+            }
+            return dist[t];
+        }
+    }
+
+    /**
+     * Modalità interrogazione (--query f): invece di tutte le coppie risponde solo alle coppie richieste.
+     * Ogni riga non vuota di f (o di stdin se f è "-") contiene due nodi, "N3 N7" oppure "3 7";
+     * il '#' apre un commento. Per ogni coppia si esegue AltSearch e poi extractPaths sulle etichette trovate,
+     * scrivendo il risultato nello stesso formato dell'esecuzione completa (coppia e coppia inversa).
+     * Le righe non valide sono segnalate su stderr e saltate. Con stdin si svuota l'output dopo ogni risposta.
+     * Alla fine stampa su stderr il numero di interrogazioni e i nodi estratti in media per interrogazione.
+     */
+    static void runQueries(Grafo g, String file, int landmarks, Motore motore, ResultWriter out) throws IOException {
+        Workspace ws = new Workspace(g, motore);
+        Landmarks lm = landmarks > 0 ? Landmarks.build(g, landmarks, ws) : null;
+        AltSearch alt = new AltSearch(g, lm, motore.arity);
+        boolean interattivo = file.equals("-");
+        long risposte = 0;
+
+        try (BufferedReader in = interattivo
+                ? new BufferedReader(new InputStreamReader(System.in))
+                : new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                int hash = line.indexOf('#');
+                if (hash >= 0) line = line.substring(0, hash);
+                line = line.trim();
+                if (line.isEmpty()) continue;
+
+                String[] token = line.split("[\\s,]+");
+                int s, t;
+                try {
+                    if (token.length != 2) throw new NumberFormatException();
+                    s = Integer.parseInt(token[0].startsWith("N") ? token[0].substring(1) : token[0]);
+                    t = Integer.parseInt(token[1].startsWith("N") ? token[1].substring(1) : token[1]);
+                } catch (NumberFormatException e) {
+                    System.err.println("Interrogazione ignorata, formato non valido: \"" + line + "\"");
+                    continue;
+                }
+                if (s < 0 || t < 0 || s >= g.n || t >= g.n) {
+                    System.err.println("Interrogazione ignorata, nodo fuori intervallo: \"" + line + "\"");
+                    continue;
+                }
+
+                double D = alt.search(s, t);
+                if (!Double.isFinite(D)) {
+                    out.writePair(s, t, D, null);
+                } else if (s == t) {
+                    out.writePair(s, t, D, Collections.singletonList(new int[]{s}));
+                } else {
+                    if (ws.flow != null) ws.flow.invalidate();
+                    out.writePair(s, t, D, extractPaths(g, s, t, 3, alt.dist, ws));
+                }
+                risposte++;
+                if (interattivo) out.flush();
+            }
+        }
+        out.flush();
+        motore.raccogli(ws);
+        System.err.printf(Locale.US, "Interrogazioni: %d, nodi estratti in media: %.1f (su %d nodi)%n",
+                risposte, risposte > 0 ? (double) alt.estratti / risposte : 0.0, g.n);
+    }
+
+    /**
+     * DistanceCache: cache LRU delle righe di distanza per sorgente, usata dalla modalità server.
+     *          righe -> LinkedHashMap in ordine di accesso: il primo elemento è quello usato meno di recente
+     *          budget -> byte massimi occupati dalle righe; ogni riga costa 8 * n byte più un'intestazione fissa
+     *          hit, miss, evict -> contatori per STATS
+     * get ritorna la riga di s, calcolandola con Dijkstra fuori dal lock in caso di miss: due client che chiedono
+     * la stessa sorgente nello stesso momento possono calcolarla entrambi, ma in cache ne resta una sola.
+     * Le righe non vengono mai modificate dopo l'inserimento, quindi più thread possono leggerle insieme;
+     * una riga rimossa dalla cache resta valida per chi la sta ancora usando.
+     */
+    static class DistanceCache {
+        final Grafo g;
+        final long budget;
+        final long costoRiga;
+        private final LinkedHashMap<Integer, double[]> righe = new LinkedHashMap<>(16, 0.75f, true);
+        private long usati = 0;
+        long hit = 0, miss = 0, evict = 0;
+
+        DistanceCache(Grafo g, long budget) {
+            this.g = g;
+            this.budget = budget;
+            this.costoRiga = 8L * g.n + 64;
+        }
+
+        double[] get(int s, Workspace ws) {
+            synchronized (this) {
+                double[] riga = righe.get(s);
+                if (riga != null) {
+                    hit++;
+                    return riga;
+                }
+                miss++;
+            }
+            double[] riga = new double[g.n];
+            dijkstra(g, s, riga, ws);
+            synchronized (this) {
+                double[] presente = righe.get(s);
+                if (presente != null) return presente;
+                if (costoRiga > budget) return riga;
+                while (usati + costoRiga > budget) {
+                    Iterator<double[]> it = righe.values().iterator();
+                    it.next();
+                    it.remove();
+                    usati -= costoRiga;
+                    evict++;
+                }
+                righe.put(s, riga);
+                usati += costoRiga;
+            }
+            return riga;
+        }
+
+        synchronized String stats() {
+            return "cache: hit=" + hit + " miss=" + miss + " evict=" + evict
+                    + " righe=" + righe.size() + " byte=" + usati + "/" + budget;
+        }
+    }
+
+    /**
+     * Modalità server (--server porta|-): il grafo viene caricato una volta sola e il processo resta attivo
+     * a rispondere alle interrogazioni, senza pagare a ogni lotto lettura del file e riscaldamento della JIT.
+     * Con una porta si accettano connessioni TCP solo da localhost; ogni client è servito da un pool fisso
+     * di worker (--thread, predefinito: tutti i core), ciascuno con il proprio Workspace.
+     * Con "-" il protocollo viaggia su stdin/stdout.
+     *
+     * Protocollo a righe (una richiesta per riga, '#' per i commenti):
+     *     "s t" oppure "QUERY s t" -> coppia nello stesso formato testo dell'esecuzione completa, poi "OK"
+     *     STATS -> contatori della cache, poi "OK"
+     *     QUIT  -> chiude la connessione
+     *     errori -> "ERRORE <messaggio>"
+     * La coppia viene sempre calcolata dalla sorgente min(s, t), così il risultato coincide con quello
+     * dell'esecuzione completa e le righe in cache vengono riusate per entrambe le direzioni.
+     */
+    static void runServer(Grafo g, String porta, int threads, long budget, Motore motore) throws Exception {
+        DistanceCache cache = new DistanceCache(g, budget);
+        ThreadLocal<Workspace> workspaces = ThreadLocal.withInitial(() -> new Workspace(g, motore));
+
+        if (porta.equals("-")) {
+            serveClient(g, cache, motore, workspaces.get(), System.in, new FileOutputStream(FileDescriptor.out));
+            return;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try (java.net.ServerSocket server = new java.net.ServerSocket(Integer.parseInt(porta), 50, java.net.InetAddress.getLoopbackAddress())) {
+            System.err.println("Server in ascolto su " + server.getLocalSocketAddress() + " (" + g.n + " nodi, " + threads + " worker)");
+            while (true) {
+                java.net.Socket client = server.accept();
+                pool.execute(() -> {
+                    try (java.net.Socket c = client) {
+                        serveClient(g, cache, motore, workspaces.get(), c.getInputStream(), c.getOutputStream());
+                    } catch (IOException e) {
+                        System.err.println("Connessione chiusa: " + e.getMessage());
+                    } catch (RuntimeException e) {
+                        System.err.println("Connessione chiusa per un errore: " + e);
+                        e.printStackTrace();
+                    }
+                });
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Gestisce le richieste di un singolo client fino a QUIT o alla chiusura dello stream, poi raccoglie le metriche di ws.
+    static void serveClient(Grafo g, DistanceCache cache, Motore motore, Workspace ws, InputStream is, OutputStream os) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(is));
+        ResultWriter out = new ResultWriter(ResultWriter.TESTO, os);
+        out.metriche = motore.metriche;
+        byte[] ok = ResultWriter.ascii("OK\n");
+        String line;
+        while ((line = in.readLine()) != null) {
+            int hash = line.indexOf('#');
+            if (hash >= 0) line = line.substring(0, hash);
+            line = line.trim();
+            if (line.isEmpty()) continue;
+
+            String[] token = line.split("\\s+");
+            String cmd = token[0].toUpperCase(Locale.ROOT);
+            if (cmd.equals("QUIT")) break;
+            if (cmd.equals("STATS")) {
+                out.writeBytes(ResultWriter.ascii(cache.stats() + "\n"));
+                out.writeBytes(ok);
+                out.flush();
+                continue;
+            }
+
+            int from = cmd.equals("QUERY") ? 1 : 0;
+            int s, t;
+            try {
+                if (token.length - from != 2) throw new NumberFormatException();
+                s = Integer.parseInt(token[from].startsWith("N") ? token[from].substring(1) : token[from]);
+                t = Integer.parseInt(token[from + 1].startsWith("N") ? token[from + 1].substring(1) : token[from + 1]);
+            } catch (NumberFormatException e) {
+                out.writeBytes(ResultWriter.utf8("ERRORE richiesta non valida: " + line + "\n"));
+                out.flush();
+                continue;
+            }
+            if (s < 0 || t < 0 || s >= g.n || t >= g.n || s == t) {
+                out.writeBytes(ResultWriter.utf8("ERRORE nodi non validi: " + line + "\n"));
+                out.flush();
+                continue;
+            }
+
+            int a = Math.min(s, t), b = Math.max(s, t);
+            try {
+                appendPair(out, g, a, b, cache.get(a, ws), ws);
+            } catch (RuntimeException e) {
+                // La connessione resta aperta: si scarta la risposta a metà e si segnala l'errore al client.
+                System.err.println("Errore nella richiesta \"" + line + "\": " + e);
+                out.reset();
+                out.writeBytes(ResultWriter.utf8("ERRORE interno: " + e + "\n"));
+                out.flush();
+                continue;
+            }
+            out.writeBytes(ok);
+            out.flush();
+        }
+        out.flush();
+        motore.raccogli(ws);
+    }
+
+    /**
+     * DynamicApsp: mantiene la matrice dist[n][n] quando cambia il peso di un arco (--aggiornamenti),
+     * invece di rifare tutte le n Dijkstra e tutte le estrazioni dei cammini.
+     *          dist -> matrice delle distanze, aggiornata sul posto riga per riga
+     *          eu, ev -> estremi di ogni arco per id; un arco rimosso ha peso +infinito e resta nel CSR
+     *          righe, coppie -> righe di distanza riparate e coppie ristampate dall'ultimo aggiornamento
+     * Per ogni sorgente s si ripara solo la riga toccata dall'arco (a, b), alla Ramalingam–Reps:
+     *   peso diminuito -> se d[a] + w < d[b] (o viceversa) si riparte da b con una Dijkstra che si propaga
+     *                     solo finché le distanze migliorano;
+     *   peso aumentato -> se l'arco sosteneva d[b] (d[a] + w_vecchio == d[b]) si prendono i discendenti di b
+     *                     nel DAG dei cammini minimi: sono gli unici nodi che possono peggiorare. Le loro distanze
+     *                     ripartono dai vicini fuori dall'insieme e si ricalcolano con una Dijkstra limitata a loro.
+     * Le righe in cui l'arco non è né migliorabile né nel DAG si saltano in O(1).
+     * Poi si ristampano solo le coppie (s, t) con t > s la cui distanza è cambiata oppure con t raggiungibile
+     * dall'arco nel DAG (con tolleranza Tol) prima o dopo l'aggiornamento: per tutte le altre
+     * la DFS di findKPaths vede esattamente gli stessi archi e troverebbe gli stessi cammini.
+     */
+    static class DynamicApsp {
+        Grafo g;
+        final double[][] dist;
+        final Motore motore;
+        Workspace ws;
+        int[] eu, ev;
+        int m;
+        int righe = 0, coppie = 0;
+
+        private final IndexedHeap heap;
+        private final int[] mark;
+        private int stamp = 0;
+        private final int[] coda;
+        private final int[] toccati;
+        private final double[] vecchi;
+        private int nToccati;
+        private final int[] segnati;
+        private int nSegnati;
+        private final int[] target;
+
+        DynamicApsp(Grafo g, double[][] dist, Motore motore) {
+            int n = g.n;
+            this.g = g;
+            this.dist = dist;
+            // I pesi cambiano sotto al Workspace, che serve solo per estrarre i cammini: niente RadixHeap.
+            this.motore = motore.coda == Motore.Coda.RADIX ? motore.conCoda(Motore.Coda.PQ) : motore;
+            this.ws = new Workspace(g, this.motore);
+            this.heap = new IndexedHeap(n, 4);
+            this.mark = new int[n];
+            this.coda = new int[n];
+            this.toccati = new int[n];
+            this.vecchi = new double[n];
+            this.segnati = new int[n];
+            this.target = new int[3 * n];
+            this.m = g.edgeCount();
+            this.eu = new int[Math.max(m, 1)];
+            this.ev = new int[Math.max(m, 1)];
+            for (int u = 0; u < n; u++) {
+                for (int p = g.offsets[u]; p < g.offsets[u + 1]; p++) {
+                    int id = g.edgeIds[p];
+                    eu[id] = g.targets[p];
+                    ev[id] = u;
+                }
+            }
+        }
+
+        // Primo arco (id più basso) non rimosso tra u e v, -1 se non esiste.
+        int findEdge(int u, int v) {
+            int best = -1;
+            for (int p = g.offsets[u]; p < g.offsets[u + 1]; p++) {
+                if (g.targets[p] == v && g.weights[p] != Double.POSITIVE_INFINITY && (best < 0 || g.edgeIds[p] < best)) {
+                    best = g.edgeIds[p];
+                }
+            }
+            return best;
+        }
+
+        double weight(int id) {
+            int u = eu[id];
+            for (int p = g.offsets[u]; p < g.offsets[u + 1]; p++) {
+                if (g.edgeIds[p] == id) return g.weights[p];
+            }
+            return Double.POSITIVE_INFINITY;
+        }
+
+        // Scrive il peso nelle due copie dell'arco nel CSR.
+        private void setWeight(int id, double w) {
+            int u = eu[id], v = ev[id];
+            for (int p = g.offsets[u]; p < g.offsets[u + 1]; p++) {
+                if (g.edgeIds[p] == id) g.weights[p] = w;
+            }
+            for (int p = g.offsets[v]; p < g.offsets[v + 1]; p++) {
+                if (g.edgeIds[p] == id) g.weights[p] = w;
+            }
+        }
+
+        void updateEdge(int u, int v, double w, ResultWriter out) throws IOException {
+            int id = findEdge(u, v);
+            if (id < 0) throw new IllegalArgumentException("Arco N" + u + "-N" + v + " inesistente");
+            apply(id, w, out);
+        }
+
+        void removeEdge(int u, int v, ResultWriter out) throws IOException {
+            int id = findEdge(u, v);
+            if (id < 0) throw new IllegalArgumentException("Arco N" + u + "-N" + v + " inesistente");
+            apply(id, Double.POSITIVE_INFINITY, out);
+        }
+
+        /**
+         * Il CSR non ha spazio per un arco nuovo: si ricostruisce il grafo in O(n + m) con l'arco in coda
+         * (id = m, peso +infinito, quindi nessuna distanza cambia) e poi lo si tratta come una diminuzione di peso.
+         * L'ordine delle liste di adiacenza resta quello di inserimento, come se l'arco fosse l'ultimo del file.
+         */
+        void addEdge(int u, int v, double w, ResultWriter out) throws IOException {
+            int[] us = Arrays.copyOf(eu, m + 1), vs = Arrays.copyOf(ev, m + 1);
+            double[] pesi = new double[m + 1];
+            for (int a = 0; a < g.n; a++) {
+                for (int p = g.offsets[a]; p < g.offsets[a + 1]; p++) pesi[g.edgeIds[p]] = g.weights[p];
+            }
+            us[m] = u;
+            vs[m] = v;
+            pesi[m] = Double.POSITIVE_INFINITY;
+            g = Grafo.build(g.n, us, vs, pesi, m + 1);
+            eu = us;
+            ev = vs;
+            m++;
+            motore.raccogli(ws);
+            ws = new Workspace(g, motore);
+            apply(m - 1, w, out);
+        }
+
+        private void apply(int id, double wn, ResultWriter out) throws IOException {
+            if (wn < 0 || Double.isNaN(wn)) throw new IllegalArgumentException("Peso non valido: " + wn);
+            int a = eu[id], b = ev[id];
+            double wo = weight(id);
+            righe = 0;
+            coppie = 0;
+            if (wn == wo) return;
+
+            for (int s = 0; s < g.n; s++) {
+                double[] d = dist[s];
+                boolean nelDag = tight(d[a], wo, d[b]) || tight(d[b], wo, d[a]);
+                boolean migliora = d[a] + wn < d[b] || d[b] + wn < d[a];
+                boolean nuovoDag = tight(d[a], wn, d[b]) || tight(d[b], wn, d[a]);
+                if (!nelDag && !migliora && !nuovoDag) continue;
+
+                // Nodi raggiungibili dall'arco nel DAG vecchio.
+                nextStamp();
+                nSegnati = 0;
+                if (tight(d[a], wo, d[b])) reach(b, d);
+                if (tight(d[b], wo, d[a])) reach(a, d);
+                int primiSegnati = nSegnati;
+
+                nToccati = 0;
+                if (wn < wo) {
+                    setWeight(id, wn);
+                    decrease(s, a, b, wn, d);
+                } else {
+                    increase(s, a, b, wo, d);
+                    setWeight(id, wn);
+                    rebuild(d);
+                }
+
+                int cambiati = 0;
+                int k = 0;
+                for (int i = 0; i < primiSegnati; i++) target[k++] = segnati[i];
+                for (int i = 0; i < nToccati; i++) {
+                    int v = toccati[i];
+                    if (Double.compare(d[v], vecchi[v]) != 0) {
+                        cambiati++;
+                        target[k++] = v;
+                    }
+                }
+                if (cambiati > 0) righe++;
+
+                // Nodi raggiungibili dall'arco nel DAG nuovo.
+                nextStamp();
+                nSegnati = 0;
+                if (tight(d[a], wn, d[b])) reach(b, d);
+                if (tight(d[b], wn, d[a])) reach(a, d);
+                for (int i = 0; i < nSegnati; i++) target[k++] = segnati[i];
+
+                Arrays.sort(target, 0, k);
+                if (ws.flow != null) ws.flow.invalidate();
+                int ultimo = -1;
+                for (int i = 0; i < k; i++) {
+                    int t = target[i];
+                    if (t <= s || t == ultimo) continue;
+                    ultimo = t;
+                    appendPair(out, g, s, t, d, ws);
+                    coppie++;
+                }
+            }
+            setWeight(id, wn);
+        }
+
+        private static boolean tight(double du, double w, double dv) {
+            return Math.abs(du + w - dv) <= Tol;
+        }
+
+        private void nextStamp() {
+            if (stamp == Integer.MAX_VALUE) {
+                Arrays.fill(mark, 0);
+                stamp = 0;
+            }
+            stamp++;
+        }
+
+        // Segna in segnati[] i nodi raggiungibili da h lungo archi tesi (con tolleranza Tol), h compreso.
+        private void reach(int h, double[] d) {
+            if (mark[h] == stamp) return;
+            mark[h] = stamp;
+            segnati[nSegnati++] = h;
+            int testa = nSegnati - 1;
+            while (testa < nSegnati) {
+                int u = segnati[testa++];
+                for (int p = g.offsets[u]; p < g.offsets[u + 1]; p++) {
+                    int v = g.targets[p];
+                    if (mark[v] != stamp && tight(d[u], g.weights[p], d[v])) {
+                        mark[v] = stamp;
+                        segnati[nSegnati++] = v;
+                    }
+                }
+            }
+        }
+
+        // Salva il valore di d[v] prima della prima modifica nella riga corrente.
+        private void touch(int v, double[] d) {
+            if (mark[v] == -stamp) return;
+            mark[v] = -stamp;
+            vecchi[v] = d[v];
+            toccati[nToccati++] = v;
+        }
+
+        // Diminuzione: Dijkstra che parte dagli estremi migliorati e si ferma dove le distanze non scendono più.
+        private void decrease(int s, int a, int b, double wn, double[] d) {
+            nextStamp();
+            if (d[a] + wn < d[b]) {
+                touch(b, d);
+                d[b] = d[a] + wn;
+                heap.insertOrDecrease(b, d[b]);
+            }
+            if (d[b] + wn < d[a]) {
+                touch(a, d);
+                d[a] = d[b] + wn;
+                heap.insertOrDecrease(a, d[a]);
+            }
+            while (!heap.isEmpty()) {
+                int u = heap.poll();
+                for (int p = g.offsets[u]; p < g.offsets[u + 1]; p++) {
+                    int v = g.targets[p];
+                    double nd = d[u] + g.weights[p];
+                    if (nd < d[v]) {
+                        touch(v, d);
+                        d[v] = nd;
+                        heap.insertOrDecrease(v, nd);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Aumento (ancora con il peso vecchio nel CSR): raccoglie in toccati[] i discendenti degli estremi
+         * sostenuti dall'arco lungo gli archi con d[u] + w == d[v] esatto, cioè quelli che Dijkstra ha usato.
+         * Un nodo fuori da questo insieme ha un cammino minimo che non passa per l'arco, quindi non cambia.
+         * La sorgente resta sempre a 0.
+         */
+        private void increase(int s, int a, int b, double wo, double[] d) {
+            nextStamp();
+            int testa = 0;
+            if (d[b] == Double.POSITIVE_INFINITY) return;
+            if (d[a] + wo == d[b] && b != s) {
+                touch(b, d);
+                coda[testa++] = b;
+            }
+            if (d[b] + wo == d[a] && a != s) {
+                touch(a, d);
+                coda[testa++] = a;
+            }
+            int letti = 0;
+            while (letti < testa) {
+                int u = coda[letti++];
+                for (int p = g.offsets[u]; p < g.offsets[u + 1]; p++) {
+                    int v = g.targets[p];
+                    if (v != s && mark[v] != -stamp && d[u] + g.weights[p] == d[v]) {
+                        touch(v, d);
+                        coda[testa++] = v;
+                    }
+                }
+            }
+        }
+
+        // Ricalcola i nodi in toccati[] (mark == -stamp) partendo dai vicini fuori dall'insieme, con il peso nuovo.
+        private void rebuild(double[] d) {
+            for (int i = 0; i < nToccati; i++) d[toccati[i]] = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < nToccati; i++) {
+                int v = toccati[i];
+                double best = Double.POSITIVE_INFINITY;
+                for (int p = g.offsets[v]; p < g.offsets[v + 1]; p++) {
+                    int x = g.targets[p];
+                    if (mark[x] != -stamp) best = Math.min(best, d[x] + g.weights[p]);
+                }
+                if (best < Double.POSITIVE_INFINITY) {
+                    d[v] = best;
+                    heap.insertOrDecrease(v, best);
+                }
+            }
+            while (!heap.isEmpty()) {
+                int u = heap.poll();
+                for (int p = g.offsets[u]; p < g.offsets[u + 1]; p++) {
+                    int v = g.targets[p];
+                    if (mark[v] != -stamp) continue;
+                    double nd = d[u] + g.weights[p];
+                    if (nd < d[v]) {
+                        d[v] = nd;
+                        heap.insertOrDecrease(v, nd);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Applica gli aggiornamenti del file (--aggiornamenti f) alla matrice già stampata, uno per riga:
+     *     "update u v w" -> nuovo peso w per il primo arco tra u e v
+     *     "add u v w"    -> nuovo arco tra u e v (in coda, come se fosse l'ultimo del file)
+     *     "remove u v"   -> rimuove il primo arco tra u e v
+     * I nodi si scrivono come nel file di input ("N3" oppure "3"); '#' apre un commento.
+     * Per ogni aggiornamento si stampano le coppie ricalcolate da DynamicApsp, precedute dalla riga dell'aggiornamento
+     * e seguite dal numero di righe e coppie ricalcolate (su stderr se il formato non è testo).
+     * Un aggiornamento non valido viene segnalato su stderr e saltato.
+     */
+    static void runUpdates(DynamicApsp dyn, String file, ResultWriter out) throws IOException {
+        boolean testo = out.formato == ResultWriter.TESTO;
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                int hash = line.indexOf('#');
+                if (hash >= 0) line = line.substring(0, hash);
+                line = line.trim();
+                if (line.isEmpty()) continue;
+
+                String[] token = line.split("\\s+");
+                String cmd = token[0].toLowerCase(Locale.ROOT);
+                try {
+                    int args = cmd.equals("remove") ? 2 : 3;
+                    if (!(cmd.equals("update") || cmd.equals("add") || cmd.equals("remove")) || token.length != args + 1)
+                        throw new IllegalArgumentException("aggiornamento non valido");
+                    int u = nodo(token[1], dyn.g.n), v = nodo(token[2], dyn.g.n);
+                    double w = args == 3 ? Double.parseDouble(token[3]) : 0;
+                    if (w < 0 || Double.isNaN(w)) throw new IllegalArgumentException("peso non valido: " + token[3]);
+                    if (!cmd.equals("add") && dyn.findEdge(u, v) < 0) throw new IllegalArgumentException("arco inesistente");
+
+                    if (testo) out.writeBytes(ResultWriter.ascii("\nAggiornamento: " + line + "\n"));
+                    else System.err.println("Aggiornamento: " + line);
+                    if (cmd.equals("update")) dyn.updateEdge(u, v, w, out);
+                    else if (cmd.equals("add")) dyn.addEdge(u, v, w, out);
+                    else dyn.removeEdge(u, v, out);
+
+                    String esito = "Righe ricalcolate: " + dyn.righe + ", coppie ricalcolate: " + dyn.coppie;
+                    if (testo) out.writeBytes(ResultWriter.ascii(esito + "\n"));
+                    else System.err.println(esito);
+                } catch (IllegalArgumentException e) {
+                    out.flush();
+                    System.err.println("Errore nell'aggiornamento \"" + line + "\": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Indice di nodo da "N<int>" o "<int>", controllando l'intervallo.
+    private static int nodo(String token, int n) {
+        int v = Integer.parseInt(token.startsWith("N") ? token.substring(1) : token);
+        if (v < 0 || v >= n) throw new IllegalArgumentException("nodo fuori intervallo: " + token);
+        return v;
+    }
+
+    // Valore di un'opzione numerica in [min, max] (con min >= 0), oppure -1 se non è un numero o è fuori intervallo.
+    private static long numero(String token, long min, long max) {
+        try {
+            long v = Long.parseLong(token);
+            return v >= min && v <= max ? v : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Lettura originale con Scanner, riga per riga (--parser scanner):
+     * per le prime m righe valide dopo l'intestazione fa il parse dell’arco con parseEdgeLine.
+     * Ritorna null se n <= 0.
+     */
+    static Grafo loadScanner(String inputFile) throws FileNotFoundException {
+        try (Scanner sc = new Scanner(new File(inputFile))) {
+            sc.useLocale(Locale.US);
+
+            List<EdgeData> edges = null;
+            int n = -1, m = -1;
+            int readEdges = 0;
+            int lineCount = 0;
+
+            while (sc.hasNextLine()) {
+                String line = sc.nextLine().trim();
+                if (line.isEmpty()) continue;
+
+                lineCount++;
+
+                if (lineCount == 1) {
+                    n = parseFirstInt(line);
+                } else if (lineCount == 2) {
+                    m = parseFirstInt(line);
+                    edges = new ArrayList<>(Math.max(m, 0));
+                } else {
+                    if (readEdges < m) {
+                        EdgeData e = parseEdgeLine(line);
+                        if (e.w < 0) {
+                            System.err.printf(Locale.US, "Errore: peso negativo non ammesso sull'arco N%d-N%d: %.2f%n", e.u, e.v, e.w);
+                        }
+                        if (e.u >= n || e.v >= n)
+                            throw new IllegalArgumentException("Nodo fuori intervallo nell'arco N" + e.u + "-N" + e.v);
+                        edges.add(e);
+                        readEdges++;
+                    }
+                }
+            }
+
+            if (n <= 0) return null;
+            return Grafo.build(n, edges != null ? edges : new ArrayList<>());
+        }
+    }
+
+    /**
+     * Legge il file passato da terminale distinguendo le prime 2 righe dal resto del file
+     * (EdgeListParser, oppure loadScanner con --parser scanner):
+     *     1ª riga: n -> numero nodi.
+     *     2ª riga: m -> numero archi.
+     *     Righe successive: per le prime m righe valide fa il parse dell’arco (u, v, w).
+     * Costruisce il grafo non orientato in forma CSR (Grafo.build) a partire dagli archi letti.
+     * Opzioni facoltative dopo il file:
+     *     --thread T -> esegue le sorgenti in parallelo su T worker (0 = tutti i core disponibili).
+     *                   Con T = 1 (predefinito) l'esecuzione è sequenziale.
+     *     --heap auto|pq|dary|radix -> coda di priorità di Dijkstra: PriorityQueue con inserimento pigro,
+     *                   IndexedHeap d-ario con decrease-key oppure RadixHeap su distanze long (solo pesi interi).
+     *                   Con auto (predefinita) si usa il RadixHeap se g.pesiInteri(), altrimenti la PriorityQueue.
+     *     --arieta d -> arietà dell'IndexedHeap (predefinita 4).
+     *     --stream -> non tiene la matrice dist[n][n]: calcola una riga alla volta e stampa subito le sue coppie.
+     *                   L'esecuzione parallela è sempre in streaming.
+     *     --parser mmap|scanner -> lettura del file con EdgeListParser (predefinita) o con lo Scanner originale.
+     *     --thread-lettura P -> con il parser mmap legge il corpo di un file grande in P blocchi paralleli.
+     *     --save-snapshot f -> salva il grafo letto nello snapshot binario f (vedi Snapshot) e termina.
+     *     --load-snapshot f -> al posto del file di testo carica il grafo dallo snapshot f.
+     *     --query f -> modalità interrogazione: risponde solo alle coppie elencate in f ("-" = stdin), vedi runQueries.
+     *     --landmark k -> numero di landmark per la ricerca A* delle interrogazioni (predefinito 8, 0 = Dijkstra troncato).
+     *     --server porta|- -> modalità server con cache LRU delle righe di distanza, vedi runServer.
+     *     --cache-mb M -> memoria massima della cache del server in MB (predefinita 256).
+     *     --estrazione dfs|flusso -> cammini con la DFS greedy di findKPaths (predefinita) oppure con il flusso
+     *                   massimo sul DAG degli archi tesi di FlowPaths.
+     *     --componenti -> risolve ogni componente connessa sul proprio sottografo e riassume le coppie disconnesse
+     *                   per coppia di componenti invece di stamparle una per una (vedi runComponents).
+     *     --intervalli -> come --componenti, con il riassunto compatto a intervalli di nodi.
+     *     --metriche json|prometheus -> attiva le Metriche e alla fine stampa il report su stderr.
+     *     --matrice f -> calcola (o riprende) la matrice di tutte le distanze nel file mappato f e termina,
+     *                   senza stampare i cammini (vedi MatriceDistanze e runMatrix).
+     *     --precisione 32|64 -> valori float32 o float64 nella matrice (predefinita 64).
+     *     --distanza s t -> con --matrice f e senza file di input legge dalla matrice la distanza tra s e t.
+     *     --aggiornamenti f -> dopo la stampa completa applica gli aggiornamenti di peso del file f
+     *                   e ristampa solo le coppie interessate (vedi DynamicApsp e runUpdates).
+     *     --formato testo|tsv|bin -> formato dei risultati (vedi ResultWriter); con tsv e bin
+     *                   il tempo totale viene stampato su stderr per non sporcare l'output.
+     * Avvia timer globale
+     * Lancia Dijkstra per ogni sorgente s, salvando dist[s] (distanze minime da s a tutti i nodi).
+     * Se dist[s][t] è +infinito stampa che non c'è connessione tra i 2 nodi,
+     * Se c'è una connessione calcola il costo e stampa i cammini trovati, (stampa anche la coppia inversa invertendo i cammini)
+     *
+     * Ferma il timer globale e stampa il tempo totale in secondi.
+     * Gestisce eventuali eccezioni stampando un messaggio d’errore su stderr, dopo aver svuotato i risultati già prodotti.
+     */
+    public static void main(String[] args) {
+        String uso = "Inserire nel terminale: java -cp . Esercizio3 <file_input> [--thread T] [--heap auto|pq|dary|radix] [--arieta d] [--stream] [--formato testo|tsv|bin] [--parser mmap|scanner] [--thread-lettura P] [--save-snapshot file] [--query f|-] [--landmark k] [--server porta|-] [--cache-mb M] [--aggiornamenti f] [--estrazione dfs|flusso] [--componenti] [--intervalli] [--metriche json|prometheus] [--matrice f [--precisione 32|64]]"
+                + "\n  oppure: java -cp . Esercizio3 --load-snapshot file [opzioni]"
+                + "\n  oppure: java -cp . Esercizio3 --matrice file --distanza s t";
+        if (args.length < 1) {
+            System.err.println(uso);
+            System.exit(1);
+        }
+        String inputFile = null;
+        String saveSnapshot = null;
+        String loadSnapshot = null;
+        String queryFile = null;
+        int landmarks = 8;
+        String serverPort = null;
+        long cacheMb = 256;
+        String updateFile = null;
+        int threads = 1;
+        String heapTipo = "auto";
+        int arity = 4;
+        boolean streaming = false;
+        boolean componenti = false;
+        String metriche = null;
+        String matrice = null;
+        int precisione = 8;
+        String[] distanza = null;
+        boolean intervalli = false;
+        boolean flusso = false;
+        int formato = ResultWriter.TESTO;
+        boolean scanner = false;
+        int parseThreads = 1;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--thread") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+                if (threads <= 0) threads = Runtime.getRuntime().availableProcessors();
+            } else if (args[i].equals("--heap") && i + 1 < args.length) {
+                String tipo = args[++i];
+                if (!tipo.equals("auto") && !tipo.equals("pq") && !tipo.equals("dary") && !tipo.equals("radix")) {
+                    System.err.println("Tipo di heap non valido: " + tipo);
+                    System.exit(1);
+                }
+                heapTipo = tipo;
+            } else if (args[i].equals("--arieta") && i + 1 < args.length) {
+                arity = Integer.parseInt(args[++i]);
+                if (arity < 2) {
+                    System.err.println("L'arietà dell'heap deve essere almeno 2.");
+                    System.exit(1);
+                }
+            } else if (args[i].equals("--formato") && i + 1 < args.length) {
+                String f = args[++i];
+                if (f.equals("testo")) formato = ResultWriter.TESTO;
+                else if (f.equals("tsv")) formato = ResultWriter.TSV;
+                else if (f.equals("bin")) formato = ResultWriter.BINARIO;
+                else {
+                    System.err.println("Formato di output non valido: " + f);
+                    System.exit(1);
+                }
+            } else if (args[i].equals("--parser") && i + 1 < args.length) {
+                String tipo = args[++i];
+                if (!tipo.equals("mmap") && !tipo.equals("scanner")) {
+                    System.err.println("Parser non valido: " + tipo);
+                    System.exit(1);
+                }
+                scanner = tipo.equals("scanner");
+            } else if (args[i].equals("--thread-lettura") && i + 1 < args.length) {
+                parseThreads = Integer.parseInt(args[++i]);
+                if (parseThreads <= 0) parseThreads = Runtime.getRuntime().availableProcessors();
+            } else if (args[i].equals("--save-snapshot") && i + 1 < args.length) {
+                saveSnapshot = args[++i];
+            } else if (args[i].equals("--load-snapshot") && i + 1 < args.length) {
+                loadSnapshot = args[++i];
+            } else if (args[i].equals("--query") && i + 1 < args.length) {
+                queryFile = args[++i];
+            } else if (args[i].equals("--landmark") && i + 1 < args.length) {
+                landmarks = Math.max(0, Integer.parseInt(args[++i]));
+            } else if (args[i].equals("--server") && i + 1 < args.length) {
+                serverPort = args[++i];
+                if (!serverPort.equals("-") && numero(serverPort, 0, 65535) < 0) {
+                    System.err.println("Porta non valida: " + serverPort);
+                    System.err.println(uso);
+                    System.exit(1);
+                }
+            } else if (args[i].equals("--cache-mb") && i + 1 < args.length) {
+                cacheMb = numero(args[++i], 1, Long.MAX_VALUE >> 20);
+                if (cacheMb < 0) {
+                    System.err.println("Memoria della cache non valida: " + args[i] + " (da 1 a " + (Long.MAX_VALUE >> 20) + " MB)");
+                    System.err.println(uso);
+                    System.exit(1);
+                }
+            } else if (args[i].equals("--estrazione") && i + 1 < args.length) {
+                String tipo = args[++i];
+                if (!tipo.equals("dfs") && !tipo.equals("flusso")) {
+                    System.err.println("Estrazione non valida: " + tipo);
+                    System.exit(1);
+                }
+                flusso = tipo.equals("flusso");
+            } else if (args[i].equals("--aggiornamenti") && i + 1 < args.length) {
+                updateFile = args[++i];
+            } else if (args[i].equals("--metriche") && i + 1 < args.length) {
+                metriche = args[++i];
+                if (!metriche.equals("json") && !metriche.equals("prometheus")) {
+                    System.err.println("Formato delle metriche non valido: " + metriche);
+                    System.exit(1);
+                }
+            } else if (args[i].equals("--matrice") && i + 1 < args.length) {
+                matrice = args[++i];
+            } else if (args[i].equals("--precisione") && i + 1 < args.length) {
+                String p = args[++i];
+                if (!p.equals("32") && !p.equals("64")) {
+                    System.err.println("Precisione non valida: " + p);
+                    System.exit(1);
+                }
+                precisione = p.equals("32") ? 4 : 8;
+            } else if (args[i].equals("--distanza") && i + 2 < args.length) {
+                distanza = new String[]{args[i + 1], args[i + 2]};
+                i += 2;
+            } else if (args[i].equals("--componenti")) {
+                componenti = true;
+            } else if (args[i].equals("--intervalli")) {
+                componenti = true;
+                intervalli = true;
+            } else if (args[i].equals("--stream")) {
+                streaming = true;
+            } else if (!args[i].startsWith("--") && inputFile == null) {
+                inputFile = args[i];
+            } else {
+                System.err.println("Opzione non riconosciuta: " + args[i]);
+                System.exit(1);
+            }
+        }
+
+        if (distanza != null) {
+            if (matrice == null || inputFile != null || loadSnapshot != null) {
+                System.err.println(uso);
+                System.exit(1);
+            }
+            try {
+                lookupMatrix(matrice, distanza[0], distanza[1]);
+            } catch (Exception e) {
+                System.err.println("Errore: " + e.getMessage());
+            }
+            return;
+        }
+        if ((inputFile == null) == (loadSnapshot == null)) {
+            System.err.println(uso);
+            System.exit(1);
+        }
+        if (loadSnapshot != null) inputFile = loadSnapshot;
+
+        // Metriche totali dell'esecuzione, stampate all'uscita anche se il server viene interrotto.
+        Metriche totali = metriche != null ? new Metriche() : null;
+        if (totali != null) {
+            String formatoReport = metriche;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> System.err.print(totali.report(formatoReport))));
+        }
+        if (componenti && (queryFile != null || serverPort != null || updateFile != null)) {
+            System.err.println("--componenti non si usa con --query, --server o --aggiornamenti.");
+            System.exit(1);
+        }
+        if (updateFile != null && (threads > 1 || streaming || queryFile != null || serverPort != null)) {
+            System.err.println("--aggiornamenti richiede la matrice completa: non si usa con --thread, --stream, --query o --server.");
+            System.exit(1);
+        }
+
+        try {
+            Grafo g;
+            long letturaStart = System.nanoTime();
+            if (loadSnapshot != null) {
+                g = Snapshot.load(loadSnapshot);
+            } else {
+                g = scanner ? loadScanner(inputFile) : EdgeListParser.load(inputFile, parseThreads);
+            }
+            if (totali != null) totali.lettura(System.nanoTime() - letturaStart);
+            if (g == null || g.n <= 0) {
+                System.err.println("Input non valido o grafo vuoto.");
+                return;
+            }
+            int n = g.n;
+
+            boolean dary = heapTipo.equals("dary");
+            Motore.Coda coda = dary ? Motore.Coda.DARY : Motore.Coda.PQ;
+            if (heapTipo.equals("radix") || heapTipo.equals("auto")) {
+                if (g.pesiInteri()) coda = Motore.Coda.RADIX;
+                else if (heapTipo.equals("radix")) System.err.println("Pesi non interi: si usa la PriorityQueue al posto del RadixHeap.");
+            }
+            Motore motore = new Motore(coda, arity, flusso, totali);
+
+            if (saveSnapshot != null) {
+                Snapshot.save(g, saveSnapshot);
+                System.out.println("Snapshot salvato in " + saveSnapshot + ": " + n + " nodi, " + g.edgeCount() + " archi.");
+                return;
+            }
+
+            if (matrice != null) {
+                runMatrix(g, matrice, precisione, threads, motore);
+                return;
+            }
+
+            if (serverPort != null) {
+                int workers = threads > 1 ? threads : Runtime.getRuntime().availableProcessors();
+                runServer(g, serverPort, workers, cacheMb << 20, motore);
+                return;
+            }
+
+            long globalStart = System.nanoTime();
+
+            ResultWriter out = new ResultWriter(formato, new FileOutputStream(FileDescriptor.out));
+            try {
+                out.metriche = totali;
+                out.writeHeader(n);
+                if (queryFile != null) {
+                    runQueries(g, queryFile, landmarks, motore, out);
+                } else if (componenti) {
+                    runComponents(g, threads, motore, intervalli, out);
+                } else if (threads > 1) {
+                    runParallel(g, threads, motore, out);
+                } else if (streaming) {
+                    runStreaming(g, motore, out);
+                } else {
+                    Workspace ws = new Workspace(g, motore);
+                    double[][] dist = new double[n][];
+                    for (int s = 0; s < n; s++) {
+                        dist[s] = new double[n];
+                        dijkstra(g, s, dist[s], ws);
+                    }
+
+                    for (int s = 0; s < n; s++) {
+                        appendSource(out, g, s, dist[s], ws);
+                    }
+                    motore.raccogli(ws);
+                    if (updateFile != null) {
+                        DynamicApsp dyn = new DynamicApsp(g, dist, motore);
+                        runUpdates(dyn, updateFile, out);
+                        motore.raccogli(dyn.ws);
+                    }
+                }
+            } finally {
+                // Anche se l'esecuzione si interrompe, i risultati già prodotti escono prima del messaggio d'errore.
+                out.flush();
+            }
+
+            long globalEnd = System.nanoTime();
+            String tempo = String.format(Locale.US, "\nTempo totale: %.6f s", (globalEnd - globalStart) / 1e9);
+            if (formato == ResultWriter.TESTO) {
+                System.out.println(tempo);
+            } else {
+                System.err.println(tempo);
+            }
 
         } catch (FileNotFoundException e) {
-            System.out.println("Errore: file non trovato: " + inputFile);
+            System.err.println("Errore: file non trovato: " + e.getMessage());
         } catch (Exception e) {
-            System.out.println("Errore nel file: " + e.getMessage());
+            System.err.println("Errore nel file: " + e.getMessage());
         }
     }
 }
\ No newline at end of file